@@ -0,0 +1,67 @@
+/* BatchBenchmark.java */
+
+package player;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  BatchEvaluator throughput in positions per second, on one thread, with
+ *  and without the Vector API.  The vector benchmark needs the engine
+ *  installed with the vector profile (mvn -B -Pvector install).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BatchBenchmark.POSITIONS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+	final static int POSITIONS = 1 << 16;
+
+	private long[] positions;
+	private int[] scores;
+	private BatchEvaluator batch;
+
+	@Setup
+	public void setup() {
+		positions = BatchEvaluator.randomPositions(POSITIONS, 1);
+		scores = new int[POSITIONS];
+		batch = new BatchEvaluator(1);
+		if (Boolean.parseBoolean(System.getProperty("network.vector", "true")) && !batch.isVectorized()) {
+			throw new IllegalStateException("the Vector API is not in use; install the engine with -Pvector");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		batch.shutdown();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dnetwork.vector=false")
+	public int[] scalar() {
+		batch.evaluate(positions, MachinePlayer.WHITE, scores);
+		return scores;
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+	public int[] vector() {
+		batch.evaluate(positions, MachinePlayer.WHITE, scores);
+		return scores;
+	}
+
+}
@@ -0,0 +1,43 @@
+/* BenchMain.java */
+
+package player;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *  Runs the benchmarks like the usual JMH main, but unless the command line
+ *  says otherwise the results go to jmh-result.json and the gc profiler
+ *  (gc.alloc.rate, gc.alloc.rate.norm) is on, so runs can be compared.
+ *  All JMH options work, e.g. "EngineBenchmark -p phase=step".
+ */
+public class BenchMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		if (cmd.shouldList()) {
+			new Runner(cmd).list();
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		if (!cmd.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmd.getResult().hasValue()) {
+			options.result("jmh-result.json");
+		}
+		if (cmd.getProfilers().isEmpty()) {
+			options.addProfiler(GCProfiler.class);
+		}
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,71 @@
+/* ChooseMoveBenchmark.java */
+
+package player;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Full chooseMove searches on every position of a phase.  Each search is
+ *  followed by taking the chosen move back, which costs next to nothing
+ *  next to the search, so every operation starts from the same positions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChooseMoveBenchmark {
+	@Param({ "opening", "midgame", "step" })
+	String phase;
+
+	@Param({ "2", "3", "4", "5" })
+	int depth;
+
+	@Param({ "false", "true" })
+	boolean pvs; //principal variation search instead of plain alpha-beta
+
+	private MachinePlayer[] players;
+	private int[] sides;
+
+	@Setup
+	public void setup() {
+		List<List<Move>> positions = Positions.load(phase);
+		players = new MachinePlayer[positions.size()];
+		sides = new int[positions.size()];
+		for (int i = 0; i < players.length; i++) {
+			List<Move> moves = positions.get(i);
+			players[i] = Positions.player(moves, depth);
+			players[i].setPrincipalVariation(pvs);
+			sides[i] = moves.size() % 2 == 0 ? MachinePlayer.WHITE : MachinePlayer.BLACK;
+		}
+	}
+
+	@Benchmark
+	public int chooseMove() {
+		int sum = 0;
+		for (int i = 0; i < players.length; i++) {
+			Move m = players[i].chooseMove();
+			sum += m.x1 * MachinePlayer.SIZE + m.y1;
+			players[i].removeChip(m.x1, m.y1, sides[i]);
+			if (m.moveKind == Move.STEP) {
+				players[i].addChip(m.x2, m.y2, sides[i]);
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,138 @@
+/* EngineBenchmark.java */
+
+package player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Benchmarks of the engine's building blocks.  One operation covers every
+ *  position of the phase, so scores compare across runs as long as the
+ *  suite (positions-v1.txt) stays the same.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+	@Param({ "opening", "midgame", "step" })
+	String phase;
+
+	private MachinePlayer[] players;
+	private int[] sides; //the side to move in each position
+	private Move[][] candidates; //every add or step validMove is asked about, per position
+	private Move[] played; //the first legal move of each position
+
+	@Setup
+	public void setup() {
+		List<List<Move>> positions = Positions.load(phase);
+		int n = positions.size();
+		players = new MachinePlayer[n];
+		sides = new int[n];
+		candidates = new Move[n][];
+		played = new Move[n];
+		for (int i = 0; i < n; i++) {
+			List<Move> moves = positions.get(i);
+			players[i] = Positions.player(moves, 1);
+			sides[i] = moves.size() % 2 == 0 ? MachinePlayer.WHITE : MachinePlayer.BLACK;
+			boolean step = moves.size() >= 20;
+			List<Move> list = new ArrayList<Move>();
+			for (int to = 0; to < 64; to++) {
+				if (!step) {
+					list.add(new Move(Board.xOf(to), Board.yOf(to)));
+					continue;
+				}
+				for (int from = 0; from < 64; from++) {
+					if (players[i].gameboard.colorAt(from) == sides[i]) {
+						list.add(new Move(Board.xOf(to), Board.yOf(to), Board.xOf(from), Board.yOf(from)));
+					}
+				}
+			}
+			candidates[i] = list.toArray(new Move[0]);
+			for (Move m : candidates[i]) {
+				if (players[i].validMove(m, sides[i])) {
+					played[i] = m;
+					break;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Repeated evaluations of an unchanged board, which take the path counts
+	 * from the board's cache; calcWin below times the search behind them
+	 */
+	@Benchmark
+	public int evaluate() {
+		int sum = 0;
+		for (int i = 0; i < players.length; i++) {
+			sum += players[i].evaluate(sides[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int validMove() {
+		int legal = 0;
+		for (int i = 0; i < players.length; i++) {
+			for (Move m : candidates[i]) {
+				if (players[i].validMove(m, sides[i])) {
+					legal++;
+				}
+			}
+		}
+		return legal;
+	}
+
+	/*
+	 * The network search itself; MachinePlayer.calcWin would answer from the
+	 * board's cache after the first call
+	 */
+	@Benchmark
+	public int calcWin() {
+		int sum = 0;
+		for (MachinePlayer p : players) {
+			Board b = p.gameboard;
+			sum += NetworkFinder.calcWin(b.chips[MachinePlayer.BLACK], b.links, MachinePlayer.BLACK);
+			sum += NetworkFinder.calcWin(b.chips[MachinePlayer.WHITE], b.links, MachinePlayer.WHITE);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long addRemove() {
+		long hash = 0;
+		for (int i = 0; i < players.length; i++) {
+			MachinePlayer p = players[i];
+			Move m = played[i];
+			if (m.moveKind == Move.ADD) {
+				p.addChip(m.x1, m.y1, sides[i]);
+				hash ^= p.gameboard.hash;
+				p.removeChip(m.x1, m.y1, sides[i]);
+			} else {
+				p.removeChip(m.x2, m.y2, sides[i]);
+				p.addChip(m.x1, m.y1, sides[i]);
+				hash ^= p.gameboard.hash;
+				p.removeChip(m.x1, m.y1, sides[i]);
+				p.addChip(m.x2, m.y2, sides[i]);
+			}
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,93 @@
+/* KeepBench.java */
+
+package player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Measures what setKeepState saves on the move after a search: on every
+ *  suite position the side to move searches, the opponent replies with its
+ *  own search, and the second search of the first player is timed, once
+ *  with plain players and once with keep on.  Not a JMH benchmark, since
+ *  each measured search depends on the one before it.
+ *
+ *  Usage: java -cp bench/target/benchmarks.jar player.KeepBench [-deepen] [depth]
+ *  -deepen searches by iterative deepening up to 'depth' (default 4)
+ *  instead of to a fixed depth.  Each pair of searches is repeated ROUNDS
+ *  times and the first WARMUP rounds are not counted.
+ */
+public class KeepBench {
+	final static int ROUNDS = 20;
+	final static int WARMUP = 5;
+
+	private KeepBench() {
+	}
+
+	/*
+	 * Return a player of 'color' that has seen 'moves'
+	 */
+	static MachinePlayer player(List<Move> moves, int color, int depth, boolean deepen, boolean keep) {
+		MachinePlayer player = deepen ? new MachinePlayer(color, depth, 60000) : new MachinePlayer(color, depth);
+		player.setKeepState(keep);
+		int c = MachinePlayer.WHITE;
+		for (Move m : moves) {
+			if (!(c == color ? player.forceMove(m) : player.opponentMove(m))) {
+				throw new IllegalArgumentException("illegal move " + m + " in " + Positions.SUITE);
+			}
+			c = 1 - c;
+		}
+		return player;
+	}
+
+	/*
+	 * Play a search and a reply on every position, then time the next search.
+	 * Return the total nodes and nanoseconds of the timed searches.
+	 */
+	static long[] run(List<List<Move>> positions, int depth, boolean deepen, boolean keep) {
+		long[] total = new long[2];
+		for (List<Move> moves : positions) {
+			int side = moves.size() % 2 == 0 ? MachinePlayer.WHITE : MachinePlayer.BLACK;
+			MachinePlayer player = player(moves, side, depth, deepen, keep);
+			MachinePlayer opponent = player(moves, 1 - side, depth, deepen, false);
+			Move m = player.chooseMove();
+			opponent.opponentMove(m);
+			player.opponentMove(opponent.chooseMove());
+			player.chooseMove();
+			SearchStats stats = player.getStats();
+			total[0] += stats.nodes;
+			total[1] += stats.nanos;
+		}
+		return total;
+	}
+
+	public static void main(String[] args) {
+		boolean deepen = false;
+		int depth = 4;
+		for (String a : args) {
+			if (a.equals("-deepen")) {
+				deepen = true;
+			} else {
+				depth = Integer.parseInt(a);
+			}
+		}
+		List<List<Move>> positions = new ArrayList<List<Move>>();
+		positions.addAll(Positions.load("midgame"));
+		positions.addAll(Positions.load("step"));
+		long[][] sums = new long[2][2];
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int keep = 0; keep < 2; keep++) {
+				long[] total = run(positions, depth, deepen, keep == 1);
+				if (round >= WARMUP) {
+					sums[keep][0] += total[0];
+					sums[keep][1] += total[1];
+				}
+			}
+		}
+		int n = (ROUNDS - WARMUP) * positions.size();
+		System.out.printf("%s %d, plain -> keep: %d -> %d nodes, %.2f -> %.2f ms per search (%.0f%%)%n",
+				deepen ? "iterative deepening" : "fixed depth", depth, sums[0][0] / n, sums[1][0] / n,
+				sums[0][1] / 1e6 / n, sums[1][1] / 1e6 / n, 100.0 * sums[1][1] / sums[0][1]);
+	}
+
+}
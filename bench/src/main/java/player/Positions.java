@@ -0,0 +1,67 @@
+/* Positions.java */
+
+package player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  The fixed benchmark positions in positions-v1.txt.  A position is named
+ *  phase-n (opening, midgame or step) and written as the moves that lead
+ *  to it from the empty board.
+ */
+public class Positions {
+	final static String SUITE = "positions-v1.txt";
+
+	private Positions() {
+	}
+
+	/*
+	 * Return the move lists of every position whose name starts with 'phase'
+	 */
+	static List<List<Move>> load(String phase) {
+		List<List<Move>> positions = new ArrayList<List<Move>>();
+		InputStream in = Positions.class.getResourceAsStream(SUITE);
+		if (in == null) {
+			throw new IllegalStateException(SUITE + " is missing");
+		}
+		try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				if (line.startsWith(phase + "-")) {
+					positions.add(Notation.parseMoves(line.substring(line.indexOf(':') + 1)));
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot read " + SUITE, e);
+		}
+		if (positions.isEmpty()) {
+			throw new IllegalArgumentException("no " + phase + " positions in " + SUITE);
+		}
+		return positions;
+	}
+
+	/*
+	 * Return a player for the side to move in the position reached by 'moves',
+	 * searching 'depth' plies
+	 */
+	static MachinePlayer player(List<Move> moves, int depth) {
+		int side = moves.size() % 2 == 0 ? MachinePlayer.WHITE : MachinePlayer.BLACK;
+		MachinePlayer player = new MachinePlayer(side, depth);
+		int color = MachinePlayer.WHITE;
+		for (Move m : moves) {
+			boolean legal = color == side ? player.forceMove(m) : player.opponentMove(m);
+			if (!legal) {
+				throw new IllegalArgumentException("illegal move " + m + " in " + SUITE);
+			}
+			color = 1 - color;
+		}
+		return player;
+	}
+
+}
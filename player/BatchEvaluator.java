@@ -0,0 +1,226 @@
+/* BatchEvaluator.java */
+
+package player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ *  Scores many positions at once, for analysis, book building and weight
+ *  tuning rather than for the search.  A batch is a long[] holding two
+ *  masks per position, the black chips and then the white chips (bit
+ *  x * 8 + y for square (x, y), as in Board).  Every score is the one
+ *  MachinePlayer.evaluate would give the position.
+ *
+ *  The connected pairs of every position are counted with mask shifts, no
+ *  Board needed.  When the engine is built with the "vector" profile and
+ *  the JVM runs with --add-modules jdk.incubator.vector, VectorPairCounter
+ *  does that for several positions at a time in the vector registers;
+ *  otherwise a plain loop does.  Setting -Dnetwork.vector=false forces the
+ *  loop.  Paths are then counted one position at a time, and only for a
+ *  color that has chips in both of its goal areas.
+ *
+ *  Batches of more than CHUNK positions are split among a pool of threads.
+ *
+ *  Usage: java player.BatchEvaluator [-threads N] [positions]
+ *  scores random positions and prints the throughput.
+ */
+public class BatchEvaluator {
+	final static int CHUNK = 4096; //positions per task
+
+	/*
+	 * Counts connected pairs for positions from .. to-1 of a batch into
+	 * pairs, two per position (black, white) starting at pairs[0]
+	 */
+	interface PairCounter {
+		void count(long[] positions, int from, int to, int[] pairs);
+	}
+
+	//the plain loop
+	final static PairCounter SCALAR = new PairCounter() {
+		public void count(long[] positions, int from, int to, int[] pairs) {
+			for (int i = from; i < to; i++) {
+				long black = positions[2 * i], white = positions[2 * i + 1];
+				pairs[2 * (i - from)] = Board.pairs(black, black | white);
+				pairs[2 * (i - from) + 1] = Board.pairs(white, black | white);
+			}
+		}
+	};
+
+	//VectorPairCounter if it is built and the vector module is loaded, else null
+	private final static PairCounter VECTOR = loadVector();
+
+	private PairCounter counter = VECTOR != null ? VECTOR : SCALAR;
+	private int threads;
+	private ForkJoinPool pool;
+
+	/*
+	 * Creates an evaluator that splits large batches among 'threads' threads
+	 */
+	public BatchEvaluator(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	private static PairCounter loadVector() {
+		if (!Boolean.parseBoolean(System.getProperty("network.vector", "true"))
+				|| !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			return null;
+		}
+		try {
+			return (PairCounter) Class.forName("player.VectorPairCounter").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Return true if pairs are counted with the Vector API
+	 */
+	public boolean isVectorized() {
+		return counter != SCALAR;
+	}
+
+	/*
+	 * Score every position of 'positions' (two masks each, see the class
+	 * comment) for 'color' into scores[0 .. positions.length / 2 - 1]
+	 */
+	public void evaluate(final long[] positions, final int color, final int[] scores) {
+		final int count = positions.length / 2;
+		if (threads == 1 || count <= CHUNK) {
+			evaluate(positions, color, scores, 0, count);
+			return;
+		}
+		if (pool == null) {
+			pool = new ForkJoinPool(threads);
+		}
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int from = 0; from < count; from += CHUNK) {
+			final int start = from;
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					evaluate(positions, color, scores, start, Math.min(count, start + CHUNK));
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> f : pool.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	//Score positions from .. to-1, CHUNK at a time
+	private void evaluate(long[] positions, int color, int[] scores, int from, int to) {
+		int[] pairs = new int[2 * Math.min(CHUNK, to - from)];
+		long[] links = new long[Board.SIZE * Board.SIZE];
+		for (int start = from; start < to; start += CHUNK) {
+			int end = Math.min(to, start + CHUNK);
+			counter.count(positions, start, end, pairs);
+			for (int i = start; i < end; i++) {
+				long black = positions[2 * i], white = positions[2 * i + 1];
+				int mine = pairs[2 * (i - start) + color];
+				int theirs = pairs[2 * (i - start) + 1 - color];
+				scores[i] = score(black, white, color, mine, theirs, links);
+			}
+		}
+	}
+
+	/*
+	 * MachinePlayer.evaluate for one position, given the connected pairs of
+	 * each side
+	 */
+	private static int score(long black, long white, int color, int mine, int theirs, long[] links) {
+		long all = black | white;
+		long own = color == MachinePlayer.WHITE ? white : black;
+		int currPath = paths(own, all, color, links);
+		if (currPath == NetworkFinder.WIN) {
+			return NetworkFinder.WIN;
+		}
+		int otherPath = paths(all & ~own, all, 1 - color, links);
+		if (otherPath == NetworkFinder.WIN) {
+			return -NetworkFinder.WIN;
+		}
+		//evaluate's neighbor counts are twice the pairs
+		return mine + currPath * 4 - otherPath * 2 - theirs * 2;
+	}
+
+	//NetworkFinder.calcWin, connecting the chips only if a path could exist
+	private static int paths(long own, long all, int color, long[] links) {
+		long start = own & (color == MachinePlayer.WHITE ? Board.COLUMN_0 : Board.ROW_0);
+		if (start == 0 || (own & NetworkFinder.END_LINES) == 0) {
+			return 0;
+		}
+		Board.connect(own, all, links);
+		return NetworkFinder.calcWin(own, links, color);
+	}
+
+	/*
+	 * Stop the threads of the pool, if it was started
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/*
+	 * Return 'count' positions reached by random legal adds, from 2 to 20
+	 * chips, for measuring throughput
+	 */
+	static long[] randomPositions(int count, long seed) {
+		Random random = new Random(seed);
+		long[] positions = new long[2 * count];
+		for (int i = 0; i < count; i++) {
+			Board board = new Board();
+			int chips = 2 + random.nextInt(19);
+			int color = MachinePlayer.WHITE;
+			for (int n = 0; n < chips; n++) {
+				int sq;
+				do {
+					sq = random.nextInt(Board.SIZE * Board.SIZE);
+				} while (!board.canMove(sq, -1, color));
+				board.add(sq, color);
+				color = 1 - color;
+			}
+			positions[2 * i] = board.chips[MachinePlayer.BLACK];
+			positions[2 * i + 1] = board.chips[MachinePlayer.WHITE];
+		}
+		return positions;
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int count = 1000000;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else {
+				count = Integer.parseInt(args[i]);
+			}
+		}
+		long[] positions = randomPositions(count, 1);
+		int[] scores = new int[count];
+		BatchEvaluator batch = new BatchEvaluator(threads);
+		System.out.println(count + " positions, " + threads + " threads, "
+				+ (batch.isVectorized() ? "vectorized (" + VECTOR + ")" : "scalar"));
+		for (int round = 1; round <= 5; round++) {
+			long start = System.nanoTime();
+			batch.evaluate(positions, MachinePlayer.WHITE, scores);
+			long nanos = System.nanoTime() - start;
+			System.out.printf("round %d: %.1f ms, %.0f positions/s%n", round, nanos / 1e6, count * 1e9 / nanos);
+		}
+		batch.shutdown();
+	}
+
+}
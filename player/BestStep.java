@@ -6,7 +6,7 @@ public class BestStep {
 	
 	int score;
 	int depth;
-	Move m;
+	int move; //packed by Board.pack, 0 if none
 	
 	
 	BestStep() {
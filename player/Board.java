@@ -0,0 +1,714 @@
+/* Board.java */
+
+package player;
+
+import java.util.Random;
+
+/**
+ *  A bitboard representation of the Network gameboard.  Each color owns one
+ *  64-bit mask with a bit set for every square holding one of its chips.
+ *
+ *  Square (x, y) is bit x * SIZE + y, so a step in x moves 8 bits and a step
+ *  in y moves 1 bit.  Goal areas, forbidden squares, the 3x3 neighborhood of
+ *  each square and the rays in the eight directions are constant masks, so
+ *  legality, neighbor counting and connection queries are all mask operations.
+ *
+ *  Two chips are connected when they are the same color, nothing sits
+ *  between them on a row, column or diagonal, and they do not share a goal
+ *  line.  The connections of every chip are kept as masks in links[], which
+ *  add and remove patch along the four lines through the square they change.
+ *  They also keep the number of connected pairs per color, and the path
+ *  counts of NetworkFinder are cached until a color's connections change, so
+ *  the evaluation terms cost little more than a lookup at a leaf.
+ */
+public class Board {
+	final static int SIZE = MachinePlayer.SIZE;
+
+	//directions, in the same order the old GameNode neighbors array used
+	final static int UPLEFT = 0;
+	final static int UPPER = 1;
+	final static int UPRIGHT = 2;
+	final static int RIGHT = 3;
+	final static int LOWRIGHT = 4;
+	final static int LOWER = 5;
+	final static int LOWLEFT = 6;
+	final static int LEFT = 7;
+	final static int[] DX = { -1, 0, 1, 1, 1, 0, -1, -1 };
+	final static int[] DY = { 1, 1, 1, 0, -1, -1, -1, 0 };
+
+	//goal lines: columns x = 0 and x = 7 are white's, rows y = 0 and y = 7 are black's
+	final static long COLUMN_0 = 0xFFL;
+	final static long COLUMN_7 = 0xFFL << 56;
+	final static long ROW_0 = 0x0101010101010101L;
+	final static long ROW_7 = 0x8080808080808080L;
+	final static long[] GOAL = { ROW_0 | ROW_7, COLUMN_0 | COLUMN_7 };
+
+	//squares a color may never occupy: the opponent's goals (this includes the corners)
+	final static long[] FORBIDDEN = { COLUMN_0 | COLUMN_7, ROW_0 | ROW_7 };
+
+	//AROUND[sq] = the (up to) eight squares touching sq
+	final static long[] AROUND = new long[SIZE * SIZE];
+	//RAY[dir][sq] = every square strictly beyond sq in direction dir
+	final static long[][] RAY = new long[SIZE][SIZE * SIZE];
+	//GOAL_LINE[sq] = the goal line sq lies on, or 0; two chips on one goal line never connect
+	final static long[] GOAL_LINE = new long[SIZE * SIZE];
+	//for counting connected pairs a whole mask at a time, four directions:
+	//the shift that moves every square one step on, the squares a step may
+	//land on (the others wrapped around the board) and the chips a pair may
+	//end on (two chips on one goal line never connect)
+	final static int[] STEP = { 8, 1, 9, 7 };
+	final static long[] STEP_KEEP = { -1L, ~ROW_0, ~ROW_0, ~ROW_7 };
+	final static long[] PAIR_END = { ~(ROW_0 | ROW_7), ~(COLUMN_0 | COLUMN_7), -1L, -1L };
+	//DIRECTION[from * 64 + to] = the direction leading from square 'from' to
+	//square 'to', or -1 if they are not on one line
+	final static byte[] DIRECTION = new byte[SIZE * SIZE * SIZE * SIZE];
+
+	//Zobrist keys, one per color and square, plus one for white to move.
+	//The seed is fixed so that hashes are the same from run to run.
+	final static long[][] ZOBRIST = new long[2][SIZE * SIZE];
+	final static long WHITE_TO_MOVE;
+
+	static {
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				int sq = square(x, y);
+				for (int dir = 0; dir < SIZE; dir++) {
+					int i = x + DX[dir], j = y + DY[dir];
+					if (inside(i, j)) {
+						AROUND[sq] |= bit(square(i, j));
+					}
+					while (inside(i, j)) {
+						RAY[dir][sq] |= bit(square(i, j));
+						i += DX[dir];
+						j += DY[dir];
+					}
+				}
+				long b = bit(sq);
+				if ((b & COLUMN_0) != 0) {
+					GOAL_LINE[sq] = COLUMN_0;
+				} else if ((b & COLUMN_7) != 0) {
+					GOAL_LINE[sq] = COLUMN_7;
+				} else if ((b & ROW_0) != 0) {
+					GOAL_LINE[sq] = ROW_0;
+				} else if ((b & ROW_7) != 0) {
+					GOAL_LINE[sq] = ROW_7;
+				}
+			}
+		}
+		java.util.Arrays.fill(DIRECTION, (byte) -1);
+		for (int sq = 0; sq < SIZE * SIZE; sq++) {
+			for (int dir = 0; dir < SIZE; dir++) {
+				for (long ray = RAY[dir][sq]; ray != 0; ray &= ray - 1) {
+					DIRECTION[sq * SIZE * SIZE + Long.numberOfTrailingZeros(ray)] = (byte) dir;
+				}
+			}
+		}
+		Random random = new Random(0x6E6574776F726BL);
+		for (int color = 0; color < 2; color++) {
+			for (int sq = 0; sq < SIZE * SIZE; sq++) {
+				ZOBRIST[color][sq] = random.nextLong();
+			}
+		}
+		WHITE_TO_MOVE = random.nextLong();
+	}
+
+	//chips[BLACK] and chips[WHITE]
+	long[] chips;
+	//Zobrist hash of the chips on the board, kept up to date by add and remove
+	long hash;
+	//mirrorHash[s] = the hash of the board's image under Symmetry s, kept up
+	//to date the same way; mirrorHash[IDENTITY] is unused, that is hash
+	long[] mirrorHash;
+	//blocked[color] = squares where an added 'color' chip would make a group of
+	//three or more touching chips; kept up to date by add and remove
+	long[] blocked;
+	//links[sq] = the chips connected to the chip on sq (0 for an empty square);
+	//kept up to date by add and remove
+	long[] links;
+	//edges[color] = the number of connected pairs of 'color' chips
+	int[] edges;
+	//stamp[color] changes whenever a connection of 'color' is made or broken,
+	//and is never handed out twice, so an equal stamp means the same links
+	private int[] stamp;
+	private int stamps; //the last stamp handed out
+	//pathCount[color] = NetworkFinder.calcWin for 'color', computed while its
+	//stamp was pathStamp[color]
+	private int[] pathCount;
+	private int[] pathStamp;
+	//the same for NetworkFinder.calcBack
+	private int[] backCount;
+	private int[] backStamp;
+
+	//with -Dnetwork.checkEval=true every evaluation checks the incremental
+	//terms against a recount from scratch
+	final static boolean CHECK = Boolean.getBoolean("network.checkEval");
+
+	//undo journal: for every make() not yet unmade, the color that moved and
+	//its chips and the hashes before the move, and where its link changes
+	//start.  Every link changed inside make() is logged as a square and its
+	//old mask.  Grows only if a search goes deeper than it ever has.
+	private int[] savedColor;
+	private long[] savedChips;
+	private long[] savedHash;
+	private long[] savedMirrorHash; //Symmetry.COUNT entries per move
+	private long[] savedBlocked;
+	private int[] savedLinkTop;
+	private int[] savedEdges; //both colors, two entries per move
+	private int[] savedStamp; //both colors, two entries per move
+	private int top; //number of moves on the journal
+	private int[] linkSquare;
+	private long[] linkMask;
+	private int linkTop; //number of link changes on the journal
+
+	//creates an empty gameboard
+	public Board() {
+		chips = new long[2];
+		blocked = new long[2];
+		links = new long[SIZE * SIZE];
+		edges = new int[2];
+		stamp = new int[2];
+		pathCount = new int[2];
+		pathStamp = new int[] { -1, -1 };
+		backCount = new int[2];
+		backStamp = new int[] { -1, -1 };
+		savedColor = new int[JOURNAL];
+		savedChips = new long[JOURNAL];
+		savedHash = new long[JOURNAL];
+		savedMirrorHash = new long[JOURNAL * Symmetry.COUNT];
+		mirrorHash = new long[Symmetry.COUNT];
+		savedBlocked = new long[JOURNAL];
+		savedLinkTop = new int[JOURNAL];
+		savedEdges = new int[JOURNAL * 2];
+		savedStamp = new int[JOURNAL * 2];
+		linkSquare = new int[JOURNAL * LINK_CHANGES];
+		linkMask = new long[JOURNAL * LINK_CHANGES];
+	}
+
+	final static int JOURNAL = 64;
+	//most links one move can change: a step is a remove and an add, each
+	//touching the moved square and the two chips on each of four lines
+	final static int LINK_CHANGES = 48;
+
+	/*
+	 * Make this board hold the same chips as 'other'.  The undo journal is
+	 * emptied, so this is only for boards that are not in the middle of a search.
+	 */
+	void copyFrom(Board other) {
+		chips[0] = other.chips[0];
+		chips[1] = other.chips[1];
+		blocked[0] = other.blocked[0];
+		blocked[1] = other.blocked[1];
+		System.arraycopy(other.links, 0, links, 0, links.length);
+		edges[0] = other.edges[0];
+		edges[1] = other.edges[1];
+		touch(0);
+		touch(1);
+		hash = other.hash;
+		System.arraycopy(other.mirrorHash, 0, mirrorHash, 0, Symmetry.COUNT);
+		top = 0;
+		linkTop = 0;
+	}
+
+	/*
+	 * Make this board hold the chips 'black' and 'white', changing only the
+	 * squares that differ.  The undo journal is emptied, as in copyFrom.
+	 */
+	void set(long black, long white) {
+		top = 0;
+		linkTop = 0;
+		long[] want = { black, white };
+		for (int color = 0; color < 2; color++) {
+			for (long gone = chips[color] & ~want[color]; gone != 0; gone &= gone - 1) {
+				remove(Long.numberOfTrailingZeros(gone), color);
+			}
+		}
+		for (int color = 0; color < 2; color++) {
+			for (long added = want[color] & ~chips[color]; added != 0; added &= added - 1) {
+				add(Long.numberOfTrailingZeros(added), color);
+			}
+		}
+	}
+
+	static int square(int x, int y) {
+		return x * SIZE + y;
+	}
+
+	static int xOf(int sq) {
+		return sq >>> 3;
+	}
+
+	static int yOf(int sq) {
+		return sq & 7;
+	}
+
+	static long bit(int sq) {
+		return 1L << sq;
+	}
+
+	static boolean inside(int x, int y) {
+		return 0 <= x && x < SIZE && 0 <= y && y < SIZE;
+	}
+
+	/*
+	 * Return the color of the chip at (x, y), or EMPTY
+	 */
+	public int colorAt(int x, int y) {
+		return colorAt(square(x, y));
+	}
+
+	int colorAt(int sq) {
+		long b = bit(sq);
+		if ((chips[MachinePlayer.WHITE] & b) != 0) {
+			return MachinePlayer.WHITE;
+		}
+		if ((chips[MachinePlayer.BLACK] & b) != 0) {
+			return MachinePlayer.BLACK;
+		}
+		return MachinePlayer.EMPTY;
+	}
+
+	long occupied() {
+		return chips[MachinePlayer.BLACK] | chips[MachinePlayer.WHITE];
+	}
+
+	/*
+	 * Return the hash of this position with 'color' to move
+	 */
+	long key(int color) {
+		return color == MachinePlayer.WHITE ? hash ^ WHITE_TO_MOVE : hash;
+	}
+
+	/*
+	 * Return the hash of this position's image under Symmetry s, with
+	 * 'color' to move
+	 */
+	long key(int color, int s) {
+		long h = s == Symmetry.IDENTITY ? hash : mirrorHash[s];
+		return color == MachinePlayer.WHITE ? h ^ WHITE_TO_MOVE : h;
+	}
+
+	/*
+	 * Return the symmetry that takes this position, with 'color' to move, to
+	 * its canonical form: the image with the smallest key, the first one
+	 * in Symmetry order on a tie
+	 */
+	int canonical(int color) {
+		int best = Symmetry.IDENTITY;
+		long bestKey = key(color);
+		for (int s = 1; s < Symmetry.COUNT; s++) {
+			long k = key(color, s);
+			if (k < bestKey) {
+				best = s;
+				bestKey = k;
+			}
+		}
+		return best;
+	}
+
+	//Flip a 'color' chip on square sq in and out of the hash and its images
+	private void toggleHash(int sq, int color) {
+		long[] keys = ZOBRIST[color];
+		hash ^= keys[sq];
+		mirrorHash[Symmetry.MIRROR_X] ^= keys[sq ^ 56];
+		mirrorHash[Symmetry.MIRROR_Y] ^= keys[sq ^ 7];
+		mirrorHash[Symmetry.ROTATE] ^= keys[sq ^ 63];
+	}
+
+	//Put a 'color' chip on square sq
+	void add(int sq, int color) {
+		//on each line through sq, the chips on either side stop seeing each other
+		//and may connect to the new chip instead
+		for (int dir = 0; dir < 4; dir++) {
+			int a = firstChip(sq, dir), b = firstChip(sq, dir + 4);
+			if (a >= 0 && b >= 0 && (links[a] & bit(b)) != 0) {
+				setLinks(a, links[a] & ~bit(b));
+				setLinks(b, links[b] & ~bit(a));
+				int other = colorAt(a);
+				edges[other]--;
+				touch(other);
+			}
+			link(sq, a, color);
+			link(sq, b, color);
+		}
+		chips[color] |= bit(sq);
+		toggleHash(sq, color);
+		blocked[color] = cluster(chips[color]);
+	}
+
+	//Take the 'color' chip off square sq
+	void remove(int sq, int color) {
+		chips[color] &= ~bit(sq);
+		toggleHash(sq, color);
+		blocked[color] = cluster(chips[color]);
+		long old = links[sq];
+		if (old != 0) {
+			edges[color] -= Long.bitCount(old);
+			touch(color);
+		}
+		setLinks(sq, 0);
+		for (long l = old; l != 0; l &= l - 1) {
+			int other = Long.numberOfTrailingZeros(l);
+			setLinks(other, links[other] & ~bit(sq));
+		}
+		//on each line through sq, the chips on either side now see each other
+		for (int dir = 0; dir < 4; dir++) {
+			int a = firstChip(sq, dir), b = firstChip(sq, dir + 4);
+			if (a >= 0 && b >= 0) {
+				link(a, b, colorAt(a));
+			}
+		}
+	}
+
+	/*
+	 * Connect the chip on sq (of 'color') with the chip on 'other', if there is
+	 * one: they must be the same color and not share a goal line.  Nothing may
+	 * sit between them; the callers make sure of that.
+	 */
+	private void link(int sq, int other, int color) {
+		if (other < 0 || (chips[color] & bit(other)) == 0 || (GOAL_LINE[sq] & bit(other)) != 0) {
+			return;
+		}
+		setLinks(sq, links[sq] | bit(other));
+		setLinks(other, links[other] | bit(sq));
+		edges[color]++;
+		touch(color);
+	}
+
+	//Give the connections of 'color' a new stamp
+	private void touch(int color) {
+		stamp[color] = ++stamps;
+	}
+
+	/*
+	 * Return NetworkFinder.calcWin for 'color' on this board.  The count only
+	 * depends on the connections of 'color', so it is kept until they change:
+	 * a move that leaves the opponent's links alone reuses the opponent's count.
+	 */
+	int paths(int color) {
+		if (pathStamp[color] != stamp[color]) {
+			pathCount[color] = NetworkFinder.calcWin(chips[color], links, color);
+			pathStamp[color] = stamp[color];
+		}
+		return pathCount[color];
+	}
+
+	/*
+	 * Return paths(color), or if that is not a win the larger of it and the
+	 * count in the other direction, NetworkFinder.calcBack; cached the same
+	 * way.  Unlike paths(), this is the same on every image of the board.
+	 */
+	int symmetricPaths(int color) {
+		int paths = paths(color);
+		if (paths == NetworkFinder.WIN) {
+			return paths;
+		}
+		if (backStamp[color] != stamp[color]) {
+			backCount[color] = NetworkFinder.calcBack(chips[color], links, color);
+			backStamp[color] = stamp[color];
+		}
+		return Math.max(paths, backCount[color]);
+	}
+
+	/*
+	 * Recount the connections of both colors from the chips alone and throw an
+	 * IllegalStateException if links, edges or the cached path counts disagree.
+	 * Slow; for the CHECK debug mode.
+	 */
+	void check() {
+		long[] fresh = new long[SIZE * SIZE];
+		int[] pairs = new int[2];
+		long all = occupied();
+		for (long list = all; list != 0; list &= list - 1) {
+			int sq = Long.numberOfTrailingZeros(list);
+			int color = colorAt(sq);
+			for (int dir = 0; dir < SIZE; dir++) {
+				int other = firstChip(sq, dir, all);
+				if (other >= 0 && colorAt(other) == color && (GOAL_LINE[sq] & bit(other)) == 0) {
+					fresh[sq] |= bit(other);
+				}
+			}
+			pairs[color] += Long.bitCount(fresh[sq]);
+		}
+		for (int color = 0; color < 2; color++) {
+			if (pairs[color] != edges[color] * 2) {
+				throw new IllegalStateException("edges[" + color + "] is " + edges[color]
+						+ ", recount gives " + pairs[color] / 2);
+			}
+			int count = NetworkFinder.calcWin(chips[color], fresh, color);
+			if (paths(color) != count) {
+				throw new IllegalStateException("paths(" + color + ") is " + paths(color)
+						+ ", recount gives " + count);
+			}
+		}
+		for (int sq = 0; sq < SIZE * SIZE; sq++) {
+			if (fresh[sq] != links[sq]) {
+				throw new IllegalStateException("links[" + sq + "] is " + Long.toHexString(links[sq])
+						+ ", recount gives " + Long.toHexString(fresh[sq]));
+			}
+		}
+	}
+
+	//Change links[sq], logging the old mask when inside make()
+	private void setLinks(int sq, long mask) {
+		if (top > 0) {
+			linkSquare[linkTop] = sq;
+			linkMask[linkTop] = links[sq];
+			linkTop++;
+		}
+		links[sq] = mask;
+	}
+
+	/*
+	 * Return the squares where one more chip would break the cluster rule
+	 * for a side whose chips are 'own': squares touching two or more chips,
+	 * and squares touching a chip that already touches another one.
+	 */
+	static long cluster(long own) {
+		//the eight neighbors of every chip, shifted into place; shifts in y
+		//must not wrap from one column into the next
+		long up = (own << 1) & ~ROW_0, down = (own >>> 1) & ~ROW_7;
+		long ones = up, twos = 0, near;
+		twos |= ones & down;
+		ones |= down;
+		twos |= ones & (own << 8);
+		ones |= own << 8;
+		twos |= ones & (up << 8);
+		ones |= up << 8;
+		twos |= ones & (down << 8);
+		ones |= down << 8;
+		twos |= ones & (own >>> 8);
+		ones |= own >>> 8;
+		twos |= ones & (up >>> 8);
+		ones |= up >>> 8;
+		twos |= ones & (down >>> 8);
+		ones |= down >>> 8;
+		long paired = own & ones;
+		up = (paired << 1) & ~ROW_0;
+		down = (paired >>> 1) & ~ROW_7;
+		near = up | down | paired;
+		near = (near << 8) | (near >>> 8) | up | down;
+		return twos | near;
+	}
+
+	/*
+	 * Play the packed move 'code' for 'color', which the caller has checked is
+	 * legal, and record what it changed on the undo journal.
+	 */
+	void make(int code, int color) {
+		save(color);
+		if ((code >>> 12) == Move.STEP) {
+			remove((code >>> 6) & 63, color);
+		}
+		add(code & 63, color);
+	}
+
+	/*
+	 * Record a turn of 'color' that leaves the board as it is, for a null-move
+	 * search.  unmake() takes it back like a move.
+	 */
+	void pass(int color) {
+		save(color);
+	}
+
+	//Push what a move of 'color' may change onto the undo journal
+	private void save(int color) {
+		if (top == savedColor.length) {
+			savedColor = java.util.Arrays.copyOf(savedColor, top * 2);
+			savedChips = java.util.Arrays.copyOf(savedChips, top * 2);
+			savedHash = java.util.Arrays.copyOf(savedHash, top * 2);
+			savedMirrorHash = java.util.Arrays.copyOf(savedMirrorHash, top * 2 * Symmetry.COUNT);
+			savedBlocked = java.util.Arrays.copyOf(savedBlocked, top * 2);
+			savedLinkTop = java.util.Arrays.copyOf(savedLinkTop, top * 2);
+			savedEdges = java.util.Arrays.copyOf(savedEdges, top * 4);
+			savedStamp = java.util.Arrays.copyOf(savedStamp, top * 4);
+			linkSquare = java.util.Arrays.copyOf(linkSquare, top * 2 * LINK_CHANGES);
+			linkMask = java.util.Arrays.copyOf(linkMask, top * 2 * LINK_CHANGES);
+		}
+		savedColor[top] = color;
+		savedChips[top] = chips[color];
+		savedHash[top] = hash;
+		System.arraycopy(mirrorHash, 0, savedMirrorHash, top * Symmetry.COUNT, Symmetry.COUNT);
+		savedBlocked[top] = blocked[color];
+		savedLinkTop[top] = linkTop;
+		savedEdges[top * 2] = edges[0];
+		savedEdges[top * 2 + 1] = edges[1];
+		savedStamp[top * 2] = stamp[0];
+		savedStamp[top * 2 + 1] = stamp[1];
+		top++;
+	}
+
+	/*
+	 * Take back the last move played with make()
+	 */
+	void unmake() {
+		top--;
+		while (linkTop > savedLinkTop[top]) {
+			linkTop--;
+			links[linkSquare[linkTop]] = linkMask[linkTop];
+		}
+		chips[savedColor[top]] = savedChips[top];
+		blocked[savedColor[top]] = savedBlocked[top];
+		hash = savedHash[top];
+		System.arraycopy(savedMirrorHash, top * Symmetry.COUNT, mirrorHash, 0, Symmetry.COUNT);
+		edges[0] = savedEdges[top * 2];
+		edges[1] = savedEdges[top * 2 + 1];
+		stamp[0] = savedStamp[top * 2];
+		stamp[1] = savedStamp[top * 2 + 1];
+	}
+
+	/*
+	 * Return true if the last move played with make() changed any connection
+	 * of 'color'.  A move that changes none leaves evaluate() as it was.
+	 */
+	boolean touched(int color) {
+		return stamp[color] != savedStamp[(top - 1) * 2 + color];
+	}
+
+	/*
+	 * Return the number of moves played with make() and not yet unmade, which
+	 * is the distance of a search node from the root.
+	 */
+	int ply() {
+		return top;
+	}
+
+	/*
+	 * Return true if a 'color' chip may go to square 'to' (moving from square
+	 * 'from', or -1 for an add): 'to' is empty, 'from' holds a 'color' chip
+	 * and canPlace allows it.
+	 */
+	boolean canMove(int to, int from, int color) {
+		if ((occupied() & bit(to)) != 0) {
+			return false;
+		}
+		if (from >= 0 && (chips[color] & bit(from)) == 0) {
+			return false;
+		}
+		return canPlace(to, from, color);
+	}
+
+	/*
+	 * Pack a Move into an int: kind << 12 | old square << 6 | new square.
+	 * 0 means no move.
+	 */
+	static int pack(Move m) {
+		if (m == null || (m.moveKind != Move.ADD && m.moveKind != Move.STEP)) {
+			return 0;
+		}
+		int code = m.moveKind << 12 | square(m.x1, m.y1);
+		if (m.moveKind == Move.STEP) {
+			code |= square(m.x2, m.y2) << 6;
+		}
+		return code;
+	}
+
+	/*
+	 * Turn a packed move back into a Move
+	 */
+	static Move unpack(int code) {
+		if (code == 0) {
+			return null;
+		}
+		int to = code & 63, from = (code >>> 6) & 63;
+		if ((code >>> 12) == Move.STEP) {
+			return new Move(xOf(to), yOf(to), xOf(from), yOf(from));
+		}
+		return new Move(xOf(to), yOf(to));
+	}
+
+	/*
+	 * Return true if a 'color' chip may be placed on square 'to' when the 'color'
+	 * chip on square 'from' is lifted first (from = -1 for an add).
+	 * Checks the forbidden goal areas and the rule that no group of three or
+	 * more chips may touch; the caller checks that 'to' is empty.
+	 */
+	boolean canPlace(int to, int from, int color) {
+		if ((FORBIDDEN[color] & bit(to)) != 0) {
+			return false;
+		}
+		long own = chips[color];
+		if (from >= 0) {
+			own &= ~bit(from);
+		}
+		long touching = AROUND[to] & own;
+		if (touching == 0) {
+			return true;
+		}
+		if ((touching & (touching - 1)) != 0) {
+			return false;
+		}
+		return (AROUND[Long.numberOfTrailingZeros(touching)] & own) == 0;
+	}
+
+	/*
+	 * Return the first chip (of either color) seen from square sq in direction
+	 * dir, or -1 if the ray runs off the board.
+	 */
+	int firstChip(int sq, int dir) {
+		return firstChip(sq, dir, occupied());
+	}
+
+	/*
+	 * Return the first square of 'occupied' seen from square sq in direction
+	 * dir, or -1 if there is none.
+	 */
+	static int firstChip(int sq, int dir, long occupied) {
+		long seen = RAY[dir][sq] & occupied;
+		if (seen == 0) {
+			return -1;
+		}
+		//UPPER, UPRIGHT, RIGHT and LOWRIGHT walk towards higher bits
+		if (dir >= UPPER && dir <= LOWRIGHT) {
+			return Long.numberOfTrailingZeros(seen);
+		}
+		return 63 - Long.numberOfLeadingZeros(seen);
+	}
+
+	/*
+	 * Return the number of connected pairs among the chips 'own' (what edges
+	 * holds for a color) with the chips 'occupied' on the board, from the
+	 * masks alone.  Every chip looks one way along each of four directions
+	 * at once; a pair is a chip and the first chip it sees, if that is one
+	 * of 'own'.
+	 */
+	static int pairs(long own, long occupied) {
+		int count = 0;
+		for (int d = 0; d < STEP.length; d++) {
+			long ray = (own << STEP[d]) & STEP_KEEP[d];
+			long seen = 0;
+			while (ray != 0) {
+				seen |= ray & occupied;
+				ray = ((ray & ~occupied) << STEP[d]) & STEP_KEEP[d];
+			}
+			count += Long.bitCount(seen & own & PAIR_END[d]);
+		}
+		return count;
+	}
+
+	/*
+	 * Set links[sq] for every chip sq of 'own', with the chips 'occupied' on
+	 * the board, as add and remove would have left them.  Other squares of
+	 * links are not touched.
+	 */
+	static void connect(long own, long occupied, long[] links) {
+		for (long list = own; list != 0; list &= list - 1) {
+			int sq = Long.numberOfTrailingZeros(list);
+			long mask = 0;
+			for (int dir = 0; dir < SIZE; dir++) {
+				int other = firstChip(sq, dir, occupied);
+				if (other >= 0 && (own & bit(other)) != 0 && (GOAL_LINE[sq] & bit(other)) == 0) {
+					mask |= bit(other);
+				}
+			}
+			links[sq] = mask;
+		}
+	}
+
+	/*
+	 * Return the mask of every chip connected to the chip on sq
+	 */
+	long connections(int sq) {
+		return links[sq];
+	}
+
+}
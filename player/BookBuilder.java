@@ -0,0 +1,192 @@
+/* BookBuilder.java */
+
+package player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ *  Builds an opening book offline.
+ *
+ *  Usage: java player.BookBuilder [options] book-file
+ *    -plies N    plies from the empty board the book covers (default 6)
+ *    -width N    moves followed from each position (default 4)
+ *    -depth N    search depth of each book move (default 5)
+ *    -threads N  positions searched at once (default: all cores)
+ *
+ *  Starting from the empty board, every position gets a book move from a
+ *  full search.  The tree then follows the book move and the next best
+ *  moves by static evaluation, 'width' moves in all, so both the book's own
+ *  moves and the likeliest replies stay in the book.  Positions reached by
+ *  different move orders, or that are mirror images of each other (see
+ *  Symmetry), are searched once, and the book keeps one entry for them.
+ */
+public class BookBuilder {
+	private int plies = 6;
+	private int width = 4;
+	private int depth = 5;
+
+	/*
+	 * Return a player of the side to move in the position reached by 'moves'
+	 */
+	private MachinePlayer setUp(List<Move> moves) {
+		int side = Perft.sideToMove(moves);
+		MachinePlayer player = new MachinePlayer(side, depth);
+		player.setOpeningBook(null);
+		//so that the images of a position get the images of its moves
+		player.setSymmetry(true);
+		int color = MachinePlayer.WHITE;
+		for (Move m : moves) {
+			if (!(color == side ? player.forceMove(m) : player.opponentMove(m))) {
+				throw new IllegalStateException("illegal move " + m);
+			}
+			color = 1 - color;
+		}
+		return player;
+	}
+
+	/*
+	 * A searched position: the book move first in 'follow', then the other
+	 * moves to follow, all packed, and the canonical keys of the positions
+	 * they lead to.  'key' and 'move' are its book entry, for its canonical
+	 * image.
+	 */
+	static class Node {
+		int[] follow = new int[0];
+		long[] next = new long[0];
+		long key;
+		int move;
+	}
+
+	/*
+	 * Search the position reached by 'moves' and pick the moves to follow
+	 */
+	private Node expand(List<Move> moves) {
+		Node node = new Node();
+		MachinePlayer player = setUp(moves);
+		int side = Perft.sideToMove(moves);
+		int best = player.search();
+		if (best == 0) {
+			return node;
+		}
+		//rank the other moves by the evaluation right after them
+		int[] legal = new int[MachinePlayer.MAX_MOVES];
+		int count = player.legalMoves(side, legal);
+		long[] ranked = new long[count];
+		for (int k = 0; k < count; k++) {
+			player.make(legal[k], side);
+			int score = player.evaluate(side);
+			player.undo(legal[k], side);
+			ranked[k] = (long) -score << 32 | k;
+		}
+		Arrays.sort(ranked);
+		int[] follow = new int[Math.min(width, count)];
+		follow[0] = best;
+		for (int k = 0, n = 1; n < follow.length; k++) {
+			int m = legal[(int) ranked[k]];
+			if (m != best) {
+				follow[n++] = m;
+			}
+		}
+		node.follow = follow;
+		int s = player.gameboard.canonical(side);
+		node.key = player.gameboard.key(side, s);
+		node.move = Symmetry.move(best, s);
+		node.next = new long[follow.length];
+		for (int k = 0; k < follow.length; k++) {
+			player.make(follow[k], side);
+			node.next[k] = player.gameboard.key(1 - side, player.gameboard.canonical(1 - side));
+			player.undo(follow[k], side);
+		}
+		return node;
+	}
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException, java.io.IOException {
+		BookBuilder builder = new BookBuilder();
+		int threads = Runtime.getRuntime().availableProcessors();
+		String path = null;
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			if (a.startsWith("-") && i + 1 < args.length) {
+				int value = Integer.parseInt(args[++i]);
+				if (a.equals("-plies")) {
+					builder.plies = value;
+				} else if (a.equals("-width")) {
+					builder.width = Math.max(1, value);
+				} else if (a.equals("-depth")) {
+					builder.depth = value;
+				} else if (a.equals("-threads")) {
+					threads = value;
+				} else {
+					throw new IllegalArgumentException("unknown option " + a);
+				}
+			} else {
+				path = a;
+			}
+		}
+		if (path == null) {
+			System.err.println("usage: java player.BookBuilder [-plies N] [-width N] [-depth N] [-threads N] book-file");
+			System.exit(2);
+		}
+
+		final BookBuilder b = builder;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Map<Long, Integer> book = new HashMap<Long, Integer>();
+		Set<Long> queued = new HashSet<Long>(); //positions already on some level
+		List<List<Move>> level = new ArrayList<List<Move>>();
+		level.add(new ArrayList<Move>());
+		long start = System.nanoTime();
+		for (int ply = 0; ply < builder.plies && !level.isEmpty(); ply++) {
+			List<Callable<Node>> tasks = new ArrayList<Callable<Node>>();
+			for (final List<Move> moves : level) {
+				tasks.add(new Callable<Node>() {
+					public Node call() {
+						return b.expand(moves);
+					}
+				});
+			}
+			List<Future<Node>> results = pool.invokeAll(tasks);
+			List<List<Move>> next = new ArrayList<List<Move>>();
+			for (int i = 0; i < level.size(); i++) {
+				Node node = results.get(i).get();
+				if (node.follow.length == 0) {
+					continue;
+				}
+				book.put(node.key, node.move);
+				for (int k = 0; k < node.follow.length; k++) {
+					if (queued.add(node.next[k])) {
+						List<Move> moves = new ArrayList<Move>(level.get(i));
+						moves.add(Board.unpack(node.follow[k]));
+						next.add(moves);
+					}
+				}
+			}
+			System.out.printf("ply %d: %d positions searched, %d in the book%n", ply, level.size(), book.size());
+			level = next;
+		}
+		pool.shutdown();
+
+		long[] keys = new long[book.size()];
+		int n = 0;
+		for (long key : book.keySet()) {
+			keys[n++] = key;
+		}
+		Arrays.sort(keys);
+		int[] moves = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			moves[i] = book.get(keys[i]);
+		}
+		OpeningBook.write(path, keys, moves);
+		System.out.printf("%d positions written to %s in %.1f s%n", keys.length, path, (System.nanoTime() - start) / 1e9);
+	}
+
+}
@@ -0,0 +1,90 @@
+/* EvalCache.java */
+
+package player;
+
+/**
+ *  A fixed-size cache of evaluate() scores, indexed by the Zobrist key of a
+ *  position with the color the score is for (Board.key).  It is separate
+ *  from the transposition table: a score depends on nothing but the chips,
+ *  so an entry is good for as long as it lasts, in any search, at any
+ *  depth.
+ *
+ *  The cache is direct-mapped and always replaces: a store overwrites
+ *  whatever its slot held.  Each slot is one long:
+ *    bits  0-15  score + 32768
+ *    bits 16-63  the same bits of the key, which the probe must match
+ *  The low bits of the key pick the slot, so together with the stored bits
+ *  a hit matches 48 bits of the key at least.
+ *
+ *  Any number of threads may share a cache without locking.  A slot is a
+ *  single long, which a 64-bit JVM writes in one piece, and a probe reads
+ *  it once, so it sees either the old entry or the new one.
+ */
+public class EvalCache {
+	final static int ENTRY = 8; //bytes per slot
+	final static int MISS = Integer.MIN_VALUE; //probe() found no score
+	private final static long KEY_BITS = ~0xFFFFL;
+
+	private long[] slots;
+	private int mask;
+
+	//probes that found a score and probes that did not, since the cache was
+	//made or cleared; only approximate when the cache is shared between threads
+	long hits;
+	long misses;
+
+	/*
+	 * Creates a cache taking at most 'bytes' bytes, as many slots as fit
+	 * rounded down to a power of two (and at least one).
+	 */
+	public EvalCache(long bytes) {
+		int size = 1;
+		while ((long) size * 2 * ENTRY <= bytes && size < 1 << 30) {
+			size *= 2;
+		}
+		slots = new long[size];
+		mask = size - 1;
+	}
+
+	public int size() {
+		return slots.length;
+	}
+
+	public long bytes() {
+		return (long) slots.length * ENTRY;
+	}
+
+	public long hits() {
+		return hits;
+	}
+
+	public long misses() {
+		return misses;
+	}
+
+	//Forget every score and reset the counters
+	public void clear() {
+		java.util.Arrays.fill(slots, 0);
+		hits = 0;
+		misses = 0;
+	}
+
+	/*
+	 * Return the score stored for 'key', or MISS if there is none
+	 */
+	int probe(long key) {
+		long entry = slots[(int) key & mask];
+		if (entry != 0 && ((entry ^ key) & KEY_BITS) == 0) {
+			hits++;
+			return (int) (entry & 0xFFFF) - 32768;
+		}
+		misses++;
+		return MISS;
+	}
+
+	//Store 'score' for 'key', replacing whatever had its slot
+	void store(long key, int score) {
+		slots[(int) key & mask] = (key & KEY_BITS) | (score + 32768);
+	}
+
+}
@@ -0,0 +1,442 @@
+/* GameRecord.java */
+
+package player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  One game: the position it started from, the moves played and the winner.
+ *  Records are kept in append-only files that Writer adds to and Reader
+ *  streams through, a buffer at a time, so files of any size can be replayed.
+ *
+ *  File format (big-endian):
+ *    int   MAGIC
+ *    int   VERSION
+ *    then for each game:
+ *    int   length of the rest of the record in bytes
+ *    18    the start position, as Position writes it
+ *    byte  the winner, BLACK or WHITE, or -1 for none; FORFEIT is added
+ *          when the game was won by the other side's quit, illegal move
+ *          or refusal of a move rather than by a network
+ *    short each move, packed by Board.pack, to the end of the record
+ *
+ *  Records are only ever appended, so a writer that dies mid-write can only
+ *  leave a torn record at the end of the file.  Reader stops before it, and
+ *  Writer cuts it off when it reopens the file.
+ *
+ *  Usage: java player.GameRecord file ...
+ *  replays every game, checks that each move was legal (a step only once
+ *  all 20 chips are down, an add only before that and only up to 10 chips
+ *  a side) and that the winner of a game not won by forfeit has a network,
+ *  and prints the totals and the replay speed.
+ */
+public class GameRecord {
+	final static int MAGIC = 0x4E574752; //"NWGR"
+	final static int VERSION = 1;
+	final static int HEADER = 8;
+	final static int FIXED = Position.BYTES + 1; //record bytes before the moves
+	final static int NONE = -1; //no winner
+	final static int FORFEIT = 4; //added to the winner byte of a game won by forfeit
+	final static int BUFFER = 1 << 16; //bytes read or written at a time
+
+	Position start;
+	int winner = NONE;
+	boolean forfeit; //the winner won by the loser's quit, illegal or refused move
+	private int[] moves = new int[64];
+	private int count;
+
+	/*
+	 * Creates a record of a game from 'start' with no moves yet
+	 */
+	public GameRecord(Position start) {
+		this.start = start;
+	}
+
+	/*
+	 * Creates an empty record for Reader.next to fill
+	 */
+	public GameRecord() {
+		this(Position.start());
+	}
+
+	/*
+	 * Add the packed move 'code' to the end of the game
+	 */
+	void add(int code) {
+		if (code <= 0 || code > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("not a packed move: " + code);
+		}
+		if (count == moves.length) {
+			moves = java.util.Arrays.copyOf(moves, count * 2);
+		}
+		moves[count++] = code;
+	}
+
+	/*
+	 * Add m to the end of the game.  Only adds and steps can be recorded.
+	 */
+	public void add(Move m) {
+		add(Board.pack(m));
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/*
+	 * Return move i of the game, packed
+	 */
+	int move(int i) {
+		return moves[i];
+	}
+
+	/*
+	 * Return the color that plays move i
+	 */
+	public int mover(int i) {
+		return start.side ^ (i & 1);
+	}
+
+	public int winner() {
+		return winner;
+	}
+
+	public void setWinner(int winner) {
+		setWinner(winner, false);
+	}
+
+	/*
+	 * Record the winner and whether the game ended by forfeit: a quit, an
+	 * illegal move or a refused one rather than a network
+	 */
+	public void setWinner(int winner, boolean forfeit) {
+		this.winner = winner;
+		this.forfeit = forfeit && winner != NONE;
+	}
+
+	public boolean forfeit() {
+		return forfeit;
+	}
+
+	//bytes the record takes in a file, length prefix included
+	int bytes() {
+		return 4 + FIXED + 2 * count;
+	}
+
+	/*
+	 * Play the packed move 'code' for 'color' on 'board', outside any search
+	 */
+	static void play(Board board, int code, int color) {
+		if ((code >>> 12) == Move.STEP) {
+			board.remove((code >>> 6) & 63, color);
+		}
+		board.add(code & 63, color);
+	}
+
+	/*
+	 * Return true if the packed move 'code' is legal for 'color' on 'board':
+	 * an add while fewer than 20 chips are down and 'color' has fewer than
+	 * 10, a step once all 20 are, and a square the rules allow
+	 */
+	static boolean legal(Board board, int code, int color) {
+		boolean step = (code >>> 12) == Move.STEP;
+		int down = Long.bitCount(board.occupied());
+		if (step != (down >= 20) || (!step && Long.bitCount(board.chips[color]) >= 10)) {
+			return false;
+		}
+		return board.canMove(code & 63, step ? (code >>> 6) & 63 : -1, color);
+	}
+
+	/*
+	 * Return the position after the first 'ply' moves
+	 */
+	public Position position(int ply) {
+		Board board = start.toBoard();
+		for (int i = 0; i < ply; i++) {
+			play(board, moves[i], mover(i));
+		}
+		return Position.of(board, mover(ply), Math.min(Position.MAX_ROUND, start.round + ply));
+	}
+
+	/*
+	 * Appends records to a file, creating it if needed.  Records are buffered
+	 * until the buffer fills, flush() or close(); write may be called from
+	 * any thread.
+	 */
+	public static class Writer implements Closeable {
+		private FileChannel channel;
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+		private long games;
+
+		private Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/*
+		 * Open 'path' for appending.  Throws IOException if it exists and is
+		 * not a game record file.
+		 */
+		public static Writer open(String path) throws IOException {
+			FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				if (channel.size() == 0) {
+					ByteBuffer header = ByteBuffer.allocate(HEADER);
+					header.putInt(MAGIC).putInt(VERSION).flip();
+					writeFully(channel, header, 0);
+				} else {
+					checkHeader(channel, path);
+				}
+				channel.position(end(channel));
+				channel.truncate(channel.position());
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			return new Writer(channel);
+		}
+
+		/*
+		 * Return the offset after the last whole record, hopping from length
+		 * to length without reading the records.  A torn record can only be
+		 * the last one; a bad length anywhere is damage, not a torn write.
+		 */
+		private static long end(FileChannel channel) throws IOException {
+			ByteBuffer length = ByteBuffer.allocate(4);
+			long offset = HEADER, size = channel.size();
+			while (offset + 4 <= size) {
+				length.clear();
+				while (length.hasRemaining() && channel.read(length, offset + length.position()) >= 0) {
+				}
+				if (length.getInt(0) < FIXED) {
+					throw new IOException("bad record length " + length.getInt(0) + " at offset " + offset);
+				}
+				long next = offset + 4 + length.getInt(0);
+				if (next > size) {
+					break;
+				}
+				offset = next;
+			}
+			return offset;
+		}
+
+		public synchronized void write(GameRecord r) throws IOException {
+			int bytes = r.bytes();
+			if (buffer.remaining() < bytes) {
+				flush();
+				if (buffer.capacity() < bytes) {
+					buffer = ByteBuffer.allocate(bytes);
+				}
+			}
+			buffer.putInt(bytes - 4);
+			r.start.put(buffer);
+			buffer.put((byte) (r.forfeit ? r.winner + FORFEIT : r.winner));
+			for (int i = 0; i < r.count; i++) {
+				buffer.putShort((short) r.moves[i]);
+			}
+			games++;
+		}
+
+		/*
+		 * Return the number of records written since the file was opened
+		 */
+		public synchronized long games() {
+			return games;
+		}
+
+		public synchronized void flush() throws IOException {
+			buffer.flip();
+			writeFully(channel, buffer, channel.position());
+			channel.position(channel.position() + buffer.limit());
+			buffer.clear();
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (channel.isOpen()) {
+				try {
+					flush();
+				} finally {
+					channel.close();
+				}
+			}
+		}
+
+		private static void writeFully(FileChannel channel, ByteBuffer b, long offset) throws IOException {
+			while (b.hasRemaining()) {
+				offset += channel.write(b, offset);
+			}
+		}
+	}
+
+	/*
+	 * Reads the records of a file in order, holding only a buffer of it in
+	 * memory at a time
+	 */
+	public static class Reader implements Closeable {
+		private FileChannel channel;
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+		private boolean eof;
+		private boolean truncated;
+
+		private Reader(FileChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		/*
+		 * Open 'path' for reading.  Throws IOException if it cannot be read or
+		 * is not a game record file.
+		 */
+		public static Reader open(String path) throws IOException {
+			FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+			try {
+				checkHeader(channel, path);
+				channel.position(HEADER);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			return new Reader(channel);
+		}
+
+		/*
+		 * Read the next game into 'r', reusing its move array.  Return false at
+		 * the end of the file.  Throws IOException if the record is damaged.
+		 */
+		public boolean next(GameRecord r) throws IOException {
+			if (!fill(4)) {
+				return false;
+			}
+			int length = buffer.getInt(buffer.position());
+			if (length < FIXED || (length - FIXED) % 2 != 0) {
+				throw new IOException("bad record length " + length);
+			}
+			if (!fill(4 + length)) {
+				return false;
+			}
+			buffer.getInt();
+			r.start = Position.get(buffer);
+			int winner = buffer.get();
+			r.forfeit = winner >= FORFEIT;
+			r.winner = r.forfeit ? winner - FORFEIT : winner;
+			if (r.winner < NONE || r.winner > MachinePlayer.WHITE || (r.forfeit && r.winner == NONE)) {
+				throw new IOException("bad winner " + winner);
+			}
+			int count = (length - FIXED) / 2;
+			if (r.moves.length < count) {
+				r.moves = new int[Math.max(count, r.moves.length * 2)];
+			}
+			for (int i = 0; i < count; i++) {
+				int code = buffer.getShort();
+				int kind = code >>> 12;
+				if (kind != Move.ADD && kind != Move.STEP) {
+					throw new IOException("bad move " + code);
+				}
+				r.moves[i] = code;
+			}
+			r.count = count;
+			return true;
+		}
+
+		/*
+		 * Return true if the file ended in the middle of a record
+		 */
+		public boolean truncated() {
+			return truncated;
+		}
+
+		/*
+		 * Make at least 'bytes' bytes available in the buffer, growing it if
+		 * needed.  Return false if the file ends first.
+		 */
+		private boolean fill(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes) {
+				return true;
+			}
+			if (buffer.capacity() < bytes) {
+				ByteBuffer bigger = ByteBuffer.allocate(bytes);
+				bigger.put(buffer).flip();
+				buffer = bigger;
+			}
+			buffer.compact();
+			while (!eof && buffer.position() < bytes) {
+				if (channel.read(buffer) < 0) {
+					eof = true;
+				}
+			}
+			buffer.flip();
+			if (buffer.remaining() >= bytes) {
+				return true;
+			}
+			truncated = buffer.hasRemaining();
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	private static void checkHeader(FileChannel channel, String path) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+		}
+		if (header.position() < HEADER || header.getInt(0) != MAGIC) {
+			throw new IOException(path + " is not a game record file");
+		}
+		if (header.getInt(4) != VERSION) {
+			throw new IOException(path + " is game record version " + header.getInt(4) + ", expected " + VERSION);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: java player.GameRecord file ...");
+			System.exit(2);
+		}
+		GameRecord r = new GameRecord();
+		long games = 0, moves = 0, bytes = 0, illegal = 0, forfeits = 0, unproven = 0;
+		long start = System.nanoTime();
+		for (String path : args) {
+			try (Reader in = Reader.open(path)) {
+				while (in.next(r)) {
+					games++;
+					moves += r.count;
+					bytes += r.bytes();
+					Board board = r.start.toBoard();
+					boolean replayed = true;
+					for (int i = 0; i < r.count; i++) {
+						if (!legal(board, r.moves[i], r.mover(i))) {
+							illegal++;
+							replayed = false;
+							break;
+						}
+						play(board, r.moves[i], r.mover(i));
+					}
+					if (r.forfeit) {
+						forfeits++;
+					} else if (replayed && r.winner != NONE && board.paths(r.winner) != NetworkFinder.WIN) {
+						unproven++;
+					}
+				}
+				if (in.truncated()) {
+					System.out.println(path + ": ends in a torn record");
+				}
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		System.out.printf("%d games, %d moves, %.1f bytes/game%n", games, moves, games == 0 ? 0.0 : (double) bytes / games);
+		System.out.printf("%d with an illegal move, %d won by forfeit, %d other winners without a network%n", illegal,
+				forfeits, unproven);
+		System.out.printf("replayed in %.2f s: %.0f games/s, %.0f moves/s%n", nanos / 1e9, games * 1e9 / nanos,
+				moves * 1e9 / nanos);
+	}
+
+}
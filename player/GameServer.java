@@ -0,0 +1,381 @@
+/* GameServer.java */
+
+package player;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ *  Hosts many games at once against clients in the same JVM.
+ *
+ *  A game is a Session: a Position and the color the server plays, about
+ *  430 bytes of heap per active game as the load generator measures it,
+ *  where a MachinePlayer per game would carry its own board, search tables
+ *  and transposition table, about 2.2 MB.  Moves are searched on a
+ *  small pool of worker threads.  Each worker owns one MachinePlayer per
+ *  color and sets it up from the session's position for every move, so the
+ *  engines, their transposition tables and the Board's constant tables are
+ *  shared by all the games, and idle games cost no thread.
+ *
+ *  Usage: java player.GameServer [options]
+ *    -games N       games to play (default 20000)
+ *    -concurrent N  games in progress at once (default 2000)
+ *    -workers N     worker threads (default: all cores)
+ *    -engine SPEC   the server's player, as in Tournament (default machine:2)
+ *    -max N         moves after which a game is dropped as a draw (default 100)
+ *    -seed N        seed for the clients' moves (default 1)
+ *  runs a load generator whose clients play random legal moves, and prints
+ *  games per second, move latencies and the heap used per active game.
+ */
+public class GameServer {
+	private String spec;
+	private ExecutorService pool;
+	private AtomicInteger active = new AtomicInteger(); //sessions opened and not closed
+	//per worker: a player per color and a board to set them up from
+	private ThreadLocal<MachinePlayer[]> engines = new ThreadLocal<MachinePlayer[]>();
+	private ThreadLocal<Board> boards = new ThreadLocal<Board>();
+
+	/*
+	 * One game.  The server changes it only while answering a move, and a
+	 * session answers one move at a time.
+	 */
+	public static class Session {
+		final int machine; //the color the server plays
+		private volatile Position position = Position.start();
+		private volatile int winner = GameRecord.NONE;
+		private volatile boolean over;
+		private final AtomicBoolean busy = new AtomicBoolean();
+
+		Session(int machine) {
+			this.machine = machine;
+		}
+
+		public Position position() {
+			return position;
+		}
+
+		public boolean isOver() {
+			return over;
+		}
+
+		/*
+		 * Return the color that won, or GameRecord.NONE
+		 */
+		public int winner() {
+			return winner;
+		}
+	}
+
+	/*
+	 * Creates a server whose moves are chosen by players made from 'spec'
+	 * (see Tournament), searched on 'workers' threads
+	 */
+	public GameServer(String spec, int workers) {
+		Tournament.create(spec, MachinePlayer.WHITE); //fail now if 'spec' is bad
+		this.spec = spec;
+		//one queue, first in first out: a ForkJoinPool would run the moves its
+		//workers queue before the ones waiting outside, and starve those games
+		pool = Executors.newFixedThreadPool(Math.max(1, workers), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "game-server");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/*
+	 * Start a game in which the server plays 'machineColor'.  White moves
+	 * first: if that is the server, call play with no move.
+	 */
+	public Session open(int machineColor) {
+		active.incrementAndGet();
+		return new Session(machineColor);
+	}
+
+	/*
+	 * End a game, finished or not
+	 */
+	public void close(Session s) {
+		active.decrementAndGet();
+	}
+
+	public int activeGames() {
+		return active.get();
+	}
+
+	/*
+	 * Play the client's move 'move' (null when the server is to move) and
+	 * answer it.  The future gives the server's move, or null if the client's
+	 * move (or quit) ended the game.  It fails with IllegalArgumentException if 'move'
+	 * is illegal and IllegalStateException if it is not the client's turn or
+	 * the session is still answering a move.
+	 */
+	public CompletableFuture<Move> play(final Session s, final Move move) {
+		if (!s.busy.compareAndSet(false, true)) {
+			throw new IllegalStateException("the session is still answering a move");
+		}
+		return CompletableFuture.supplyAsync(new Supplier<Move>() {
+			public Move get() {
+				try {
+					return answer(s, move);
+				} finally {
+					s.busy.set(false);
+				}
+			}
+		}, pool);
+	}
+
+	//Play 'move' and the reply on this worker's player; see play
+	private Move answer(Session s, Move move) {
+		if (s.over) {
+			throw new IllegalStateException("the game is over");
+		}
+		Position p = s.position;
+		if ((p.side == s.machine) != (move == null)) {
+			throw new IllegalStateException(move == null ? "the client is to move" : "the server is to move");
+		}
+		MachinePlayer player = engine(s.machine);
+		Board board = boards.get();
+		board.set(p.black, p.white);
+		player.setUp(board, Long.bitCount(p.black | p.white));
+		int round = p.round;
+		if (move != null && move.moveKind == Move.QUIT) {
+			s.winner = s.machine;
+			s.over = true;
+			return null;
+		}
+		if (move != null) {
+			if (!player.opponentMove(move)) {
+				throw new IllegalArgumentException("illegal move " + move);
+			}
+			round++;
+			if (finish(s, player, 1 - s.machine, round)) {
+				return null;
+			}
+		}
+		Move reply = player.chooseMove();
+		if (reply == null) {
+			//no legal move: the server is stuck and loses
+			s.winner = 1 - s.machine;
+			s.over = true;
+			return new Move();
+		}
+		finish(s, player, s.machine, round + 1);
+		return reply;
+	}
+
+	/*
+	 * Record the position after a move of 'mover' and decide whether it ended
+	 * the game; a move that completes both networks loses
+	 */
+	private static boolean finish(Session s, MachinePlayer player, int mover, int round) {
+		s.position = Position.of(player.gameboard, 1 - mover, Math.min(Position.MAX_ROUND, round));
+		if (player.calcWin(1 - mover) == NetworkFinder.WIN) {
+			s.winner = 1 - mover;
+		} else if (player.calcWin(mover) == NetworkFinder.WIN) {
+			s.winner = mover;
+		} else {
+			return false;
+		}
+		s.over = true;
+		return true;
+	}
+
+	//This worker's player of 'color', created on first use
+	private MachinePlayer engine(int color) {
+		MachinePlayer[] players = engines.get();
+		if (players == null) {
+			players = new MachinePlayer[] { (MachinePlayer) Tournament.create(spec, MachinePlayer.BLACK),
+					(MachinePlayer) Tournament.create(spec, MachinePlayer.WHITE) };
+			engines.set(players);
+			boards.set(new Board());
+		}
+		return players[color];
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/*
+	 * Move latencies in buckets 1% apart, from a microsecond to minutes
+	 */
+	static class Latencies {
+		private AtomicLongArray counts = new AtomicLongArray(2048);
+		private AtomicLong total = new AtomicLong();
+
+		void add(long nanos) {
+			int bucket = (int) (Math.log(1 + nanos / 1000.0) * 100);
+			counts.incrementAndGet(Math.min(bucket, counts.length() - 1));
+			total.incrementAndGet();
+		}
+
+		long count() {
+			return total.get();
+		}
+
+		/*
+		 * Return the latency in milliseconds below which 'fraction' of the
+		 * moves were answered
+		 */
+		double percentile(double fraction) {
+			long seen = 0, wanted = (long) Math.ceil(fraction * total.get());
+			for (int i = 0; i < counts.length(); i++) {
+				seen += counts.get(i);
+				if (seen >= wanted) {
+					return (Math.exp((i + 1) / 100.0) - 1) / 1000;
+				}
+			}
+			return Double.NaN;
+		}
+	}
+
+	/*
+	 * The load generator: keeps 'concurrent' games going, each client playing
+	 * random legal moves, until 'games' games have been played
+	 */
+	static class Load {
+		GameServer server;
+		int games, concurrent, maxMoves;
+		long seed;
+		Latencies latencies = new Latencies();
+		AtomicInteger started = new AtomicInteger();
+		AtomicInteger[] results = { new AtomicInteger(), new AtomicInteger(), new AtomicInteger() }; //server wins, client wins, draws
+		AtomicInteger errors = new AtomicInteger();
+		CountDownLatch done;
+		private ThreadLocal<Board> boards = new ThreadLocal<Board>();
+		private ThreadLocal<MoveGenerator> generators = new ThreadLocal<MoveGenerator>();
+		private ThreadLocal<int[]> lists = new ThreadLocal<int[]>();
+
+		//Start the next game, if any are left
+		void next() {
+			int index = started.getAndIncrement();
+			if (index >= games) {
+				return;
+			}
+			Random random = new Random(seed * 1000003 + index);
+			GameServer.Session s = server.open(random.nextBoolean() ? MachinePlayer.WHITE : MachinePlayer.BLACK);
+			send(s, s.machine == MachinePlayer.WHITE ? null : randomMove(s, random), random, 0);
+		}
+
+		private void send(final GameServer.Session s, Move m, final Random random, final int played) {
+			final long start = System.nanoTime();
+			server.play(s, m).whenComplete(new BiConsumer<Move, Throwable>() {
+				public void accept(Move reply, Throwable failure) {
+					latencies.add(System.nanoTime() - start);
+					if (failure != null) {
+						errors.incrementAndGet();
+						end(s, 2);
+					} else if (s.isOver()) {
+						end(s, s.winner() == s.machine ? 0 : 1);
+					} else if (played + 2 >= maxMoves) {
+						end(s, 2);
+					} else {
+						send(s, randomMove(s, random), random, played + 2);
+					}
+				}
+			});
+		}
+
+		private void end(GameServer.Session s, int result) {
+			results[result].incrementAndGet();
+			server.close(s);
+			done.countDown();
+			next();
+		}
+
+		//A legal move for the client, chosen at random
+		private Move randomMove(GameServer.Session s, Random random) {
+			Board board = boards.get();
+			if (board == null) {
+				boards.set(board = new Board());
+				generators.set(new MoveGenerator());
+				lists.set(new int[MachinePlayer.MAX_MOVES]);
+			}
+			Position p = s.position();
+			board.set(p.black, p.white);
+			int[] list = lists.get();
+			int count = Long.bitCount(p.black | p.white) < 20
+					? generators.get().adds(board, p.side, list)
+					: generators.get().steps(board, p.side, list);
+			return count == 0 ? new Move() : Board.unpack(list[random.nextInt(count)]);
+		}
+	}
+
+	//heap in use after a full collection, in bytes
+	private static long heapUsed() {
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Load load = new Load();
+		load.games = 20000;
+		load.concurrent = 2000;
+		load.maxMoves = 100;
+		load.seed = 1;
+		int workers = Runtime.getRuntime().availableProcessors();
+		String spec = "machine:2";
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String a = args[i], value = args[i + 1];
+			if (a.equals("-engine")) {
+				spec = value;
+			} else if (a.equals("-games")) {
+				load.games = Integer.parseInt(value);
+			} else if (a.equals("-concurrent")) {
+				load.concurrent = Integer.parseInt(value);
+			} else if (a.equals("-workers")) {
+				workers = Integer.parseInt(value);
+			} else if (a.equals("-max")) {
+				load.maxMoves = Integer.parseInt(value);
+			} else if (a.equals("-seed")) {
+				load.seed = Long.parseLong(value);
+			} else {
+				throw new IllegalArgumentException("unknown option " + a);
+			}
+		}
+		if (args.length % 2 != 0) {
+			System.err.println("usage: java player.GameServer [-games N] [-concurrent N] [-workers N] [-engine SPEC] [-max N] [-seed N]");
+			System.exit(2);
+		}
+		load.server = new GameServer(spec, workers);
+		load.done = new CountDownLatch(load.games);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < Math.min(load.concurrent, load.games); i++) {
+			load.next();
+		}
+		//sample the heap once the games have spread out over the moves
+		while (load.done.getCount() > load.games / 2 && !load.done.await(100, java.util.concurrent.TimeUnit.MILLISECONDS)) {
+		}
+		int active = load.server.activeGames();
+		long during = heapUsed();
+		load.done.await();
+		long nanos = System.nanoTime() - start;
+		//the same heap, workers and all, with no game left
+		long perGame = active == 0 ? 0 : (during - heapUsed()) / active;
+		load.server.shutdown();
+
+		System.out.printf("%s on %d workers: %d games, %d at once%n", spec, workers, load.games, load.concurrent);
+		System.out.printf("server +%d -%d =%d, %d errors%n", load.results[0].get(), load.results[1].get(),
+				load.results[2].get(), load.errors.get());
+		System.out.printf("%.1f s: %.0f games/s, %.0f moves/s%n", nanos / 1e9, load.games * 1e9 / nanos,
+				load.latencies.count() * 1e9 / nanos);
+		System.out.printf("move latency ms: p50 %.2f p90 %.2f p99 %.2f%n", load.latencies.percentile(0.5),
+				load.latencies.percentile(0.9), load.latencies.percentile(0.99));
+		System.out.printf("heap per active game: %d bytes (%d games active)%n", perGame, active);
+	}
+
+}
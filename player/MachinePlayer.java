@@ -2,31 +2,90 @@
 
 package player;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  *  An implementation of an automatic Network player.  Keeps track of moves
  *  made by both players.  Can select a move for itself.
  */
 public class MachinePlayer extends Player {
-	protected GameNode[][] gameboard;
+	protected Board gameboard;
 	private int whichSide;
 	private int rounds;
 	private int sDepth;
-	private int howmanyPath;
+	private TranspositionTable table;
+	private EvalCache evalCache; //scores of evaluate(whichSide); null when off
+	long nodes; //bestMove calls during the last chooseMove
+	private int rootDepth; //depth of the search in progress
+	private long timeLimit; //milliseconds per move, 0 for a fixed-depth search
+	private long deadline; //System.nanoTime() at which the current search stops
+	private boolean timeUp; //set when the current search ran past its deadline
+	private volatile boolean abort; //set by another thread to stop the search early
+	private BestStep[] steps = new BestStep[0]; //bestMove results, one per ply
+	private int[][] moveLists = new int[0][]; //legal move lists, one per ply
+	private int[][] killers = new int[0][]; //the last two cutoff moves at each ply
+	private int[][] history = new int[2][1 << 12]; //cutoff credit per color and move
+	private long[] orderKeys = new long[MAX_MOVES]; //scratch space for orderMoves
+	private MoveGenerator generator = new MoveGenerator();
+	private int threads = 1; //search threads; 1 searches on the caller's thread
+	private ForkJoinPool pool;
+	private MachinePlayer[] helpers = new MachinePlayer[0]; //one per search thread
+	private AtomicInteger sharedAlpha; //best root score so far, when helping a parallel search
+	private SearchStats stats = new SearchStats(); //what the last chooseMove did
+	private OpeningBook book = sharedBook;
+	private ProofSearch solver; //created by the first chooseMove that uses it
+	private int solverMoves; //own moves the solver looks for a win in, 0 for none
+	private long solverBudget = SOLVER_BUDGET; //positions the solver may look at per move
+	private Ponder ponder; //searches on the opponent's time; null when pondering is off
+	private boolean pvs; //principal variation search with aspiration windows
+	private int lastScore = NO_SCORE; //root score of the last search, for its aspiration window
+	private boolean nullMove; //null-move pruning
+	private boolean reductions; //late-move reductions
+	private boolean futility; //futility pruning next to the leaves
+	private boolean passed; //the current node was reached by a null move
+	private boolean keep; //keep search state from one chooseMove to the next
+	private boolean symmetric; //key the tables by the canonical image of a position
+	private int played; //moves played since the last search
+	private int[] line = new int[0]; //the line of play the last search expects, packed
+	private int lineLength;
+	private int lineNext; //moves of the line played since, -1 once the game left it
+	private int engine = ALPHA_BETA;
+	private int playouts; //playouts per move of the MONTE_CARLO engine, 0 for no limit
+	private MonteCarlo monteCarlo; //created by the first Monte Carlo search
+	//the book named by -Dnetwork.book, mapped once for every player
+	private static OpeningBook sharedBook = OpeningBook.fromProperty();
 	final static int BLACK = 0;
 	final static int WHITE = 1;
 	final static int EMPTY = -1;
 	final static int SIZE = 8; //the width and height of the gameboard
+	final static int MAX_MOVES = SIZE * SIZE * 10; //10 chips, each stepping anywhere
+	final static int TABLE_SIZE = 1 << 16; //default transposition table entries
+	final static int SOLVER_TABLE_SIZE = 1 << 16; //proof-number table entries
+	final static int SOLVER_MOVES = 3; //own moves the solver looks for a win in, when on
+	final static long SOLVER_BUDGET = 50000; //default positions the solver may look at per move
+	final static int ASPIRATION = 8; //half the width of an aspiration window
+	final static int NO_SCORE = Integer.MIN_VALUE;
+	final static int NULL_REDUCTION = 2; //plies a null-move search is shallower than a real one
+	final static int LATE_MOVES = 3; //moves searched before later ones may be reduced
+	final static int LATE_DEPTH = 3; //shallowest depth at which moves are reduced
+	//how far past the bound the static score of a node one ply from the
+	//leaves must be for futility to cut it off.  Every move found in
+	//sampled positions, unless none was legal, raised the mover's score
+	//by at least 1, so 0 is enough.
+	final static int FUTILITY_MARGIN = 0;
+	//how chooseMove searches: alpha-beta to a depth, or Monte Carlo tree search
+	public final static int ALPHA_BETA = 0;
+	public final static int MONTE_CARLO = 1;
 
 
 	// Creates a machine player with the given color.  Color is either 0 (black)
 	// or 1 (white).  (White has the first move.)
 	public MachinePlayer(int color) {
-		gameboard = new GameNode[SIZE][SIZE];
-		for (int i = 0; i<SIZE; i++) {
-			for (int j = 0; j<SIZE; j++) {
-				gameboard[i][j] = new GameNode();
-			}			
-		}
+		gameboard = new Board();
 		whichSide = color;
 		/*if (color == 1) {
 			whichSide = WHITE;
@@ -35,6 +94,7 @@ public class MachinePlayer extends Player {
 		}*/
 		sDepth = 3;
 		rounds = 0;
+		table = new TranspositionTable(TABLE_SIZE);
 	}
 
 	// Creates a machine player with the given color and search depth.  Color is
@@ -44,105 +104,689 @@ public class MachinePlayer extends Player {
 		sDepth = searchDepth;
 	}
 
+	// Creates a helper of a parallel search for 'parent'.  Helpers share the
+	// parent's table, so none is allocated here.
+	private MachinePlayer(MachinePlayer parent) {
+		gameboard = new Board();
+		whichSide = parent.whichSide;
+		sDepth = parent.sDepth;
+	}
+
+	// Creates a machine player with the given color that spends at most
+	// timeLimit milliseconds on a move, searching one ply deeper at a time up to
+	// searchDepth.
+	public MachinePlayer(int color, int searchDepth, long timeLimit) {
+		this(color, searchDepth);
+		setTimeLimit(timeLimit);
+	}
+
+	// Creates a machine player with the given color whose searches use
+	// 'engine'.  For ALPHA_BETA, 'budget' is the search depth, as above.  For
+	// MONTE_CARLO it is the number of playouts per move; the search stops
+	// after that many playouts or timeLimit milliseconds, whichever comes
+	// first, and 0 means no limit on one of the two.
+	public MachinePlayer(int color, int engine, int budget, long timeLimit) {
+		this(color, budget, timeLimit);
+		if (engine == MONTE_CARLO) {
+			if (budget <= 0 && timeLimit <= 0) {
+				throw new IllegalArgumentException("a Monte Carlo search needs playouts or a time limit");
+			}
+			this.engine = MONTE_CARLO;
+			playouts = Math.max(0, budget);
+			sDepth = 3; //for the opening book and pondering, which search alpha-beta
+		} else if (engine != ALPHA_BETA) {
+			throw new IllegalArgumentException("unknown engine " + engine);
+		}
+	}
+
+	/*
+	 * Sets the time budget per move in milliseconds.  With a budget, chooseMove
+	 * searches to depth 1, 2, ... up to the search depth and plays the best
+	 * move of the deepest search that finished in time.  0 means a single
+	 * fixed-depth search.
+	 */
+	public void setTimeLimit(long millis) {
+		timeLimit = Math.max(0, millis);
+	}
+
+	/*
+	 * Sets the number of entries in the transposition table; 0 turns the
+	 * table off.
+	 */
+	public void setTableSize(int entries) {
+		if (entries <= 0) {
+			table = null;
+		} else {
+			table = new TranspositionTable(entries);
+		}
+	}
+
+	/*
+	 * Sets the opening book chooseMove plays from while the position is in it;
+	 * null turns the book off.  Players start with the book named by the
+	 * system property network.book, if any; if it cannot be loaded they
+	 * start without one, and OpeningBook.propertyError() says why.
+	 */
+	public void setOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	/*
+	 * Sets how far the proof-number solver looks before every search: it
+	 * tries to prove a network within 'moves' of this player's moves,
+	 * looking at no more than 'nodeBudget' positions.  0 moves turns it off,
+	 * which is the default.
+	 */
+	public void setSolver(int moves, long nodeBudget) {
+		solverMoves = Math.max(0, moves);
+		solverBudget = nodeBudget;
+	}
+
+	/*
+	 * Turns pondering on or off.  While pondering, the player guesses the
+	 * opponent's reply after each chooseMove and searches the position after
+	 * it on a background thread until opponentMove is called.  If the guess
+	 * was right, the next chooseMove carries on from that search (for up to
+	 * the time limit, or to the full depth without one); if not, the
+	 * background search is stopped and thrown away.  The background thread
+	 * works on copies of the board, never on this player's.
+	 */
+	public void setPondering(boolean on) {
+		if (on && ponder == null) {
+			ponder = new Ponder();
+		} else if (!on && ponder != null) {
+			ponder.cancel();
+			ponder = null;
+		}
+	}
+
+	/*
+	 * Turns principal variation search on or off.  With it, only the first
+	 * move at each node gets the full window; the others are first searched
+	 * with a null window, which only asks whether they beat the first, and
+	 * searched again with the full window if they do.  The root is searched
+	 * with a narrow window around an earlier score (of the iteration two
+	 * plies shallower, or of the last chooseMove), and again with a wider
+	 * window if the score falls outside it.  The default is plain alpha-beta.
+	 */
+	public void setPrincipalVariation(boolean on) {
+		pvs = on;
+	}
+
+	/*
+	 * Turns null-move pruning on or off.  When the side to move is already
+	 * past the bound, it first lets the opponent move twice in a row, in a
+	 * search NULL_REDUCTION plies shallower; if that still fails, the node
+	 * is cut off.  In a position where every move does harm (zugzwang,
+	 * which stepping chips can cause) passing overrates the side to move,
+	 * so each such cutoff is checked by a real search NULL_REDUCTION plies
+	 * shallower.  Off by default.
+	 */
+	public void setNullMove(boolean on) {
+		nullMove = on;
+	}
+
+	/*
+	 * Turns late-move reductions on or off.  Once LATE_MOVES moves of a node
+	 * have been searched, later quiet moves (ones that change no connection
+	 * of either side) are searched one ply shallower with a null window, and
+	 * again at full depth only if they beat the bound.  Off by default.
+	 */
+	public void setLateMoveReductions(boolean on) {
+		reductions = on;
+	}
+
+	/*
+	 * Turns futility pruning on or off.  A node one ply from the leaves
+	 * whose evaluate() score is already past the bound by FUTILITY_MARGIN is
+	 * cut off without searching its moves: the side to move can nearly
+	 * always improve its score by a move.  Off by default.
+	 */
+	public void setFutility(boolean on) {
+		futility = on;
+	}
+
+	/*
+	 * Turns keeping search state between moves on or off.  With it, each
+	 * search starts from what the last one learned: the transposition table
+	 * (aged, see TranspositionTable), the history table (halved), the
+	 * killers (moved up by the plies played since) and the line of play it
+	 * expected.  If the game followed that line, its moves go back into the
+	 * table for any position that lost its entry, so they are searched first.
+	 * Off by default: every search starts from nothing.
+	 */
+	public void setKeepState(boolean on) {
+		keep = on;
+	}
+
+	/*
+	 * Sets the memory the evaluation cache (see EvalCache) may take, in
+	 * bytes; 0 turns it off, as it is by default.  With it, the search looks
+	 * every score up before it calls evaluate() and keeps every score it
+	 * computes, across searches, so each position is evaluated about once
+	 * while it stays in the cache.
+	 */
+	public void setEvalCacheSize(long bytes) {
+		evalCache = bytes <= 0 ? null : new EvalCache(bytes);
+	}
+
+	/*
+	 * Turns symmetric keys on or off.  With them, the transposition table
+	 * and the solver store each position under its canonical image (see
+	 * Symmetry), with the moves of that image, so a position and its mirror
+	 * images share one entry.  For their scores to agree, evaluate() then
+	 * counts paths between the goals in both directions and takes the
+	 * larger count (see Board.symmetricPaths).  Off by default: every
+	 * position has its own entry and paths are counted one way.
+	 */
+	public void setSymmetry(boolean on) {
+		symmetric = on;
+		if (solver != null) {
+			solver.setSymmetry(on);
+		}
+		if (evalCache != null) {
+			evalCache.clear(); //its scores were counted the other way
+		}
+	}
+
+	//Search with the same options as 'other', sharing its evaluation cache
+	void searchLike(MachinePlayer other) {
+		pvs = other.pvs;
+		nullMove = other.nullMove;
+		reductions = other.reductions;
+		futility = other.futility;
+		keep = other.keep;
+		symmetric = other.symmetric;
+		evalCache = other.evalCache;
+	}
+
+	/*
+	 * Return the symmetry the table stores the position with 'color' to move
+	 * under: its canonical one, or IDENTITY without symmetric keys
+	 */
+	private int symmetry(int color) {
+		return symmetric ? gameboard.canonical(color) : Symmetry.IDENTITY;
+	}
+
+	/*
+	 * Return the packed table move for the position with 'color' to move,
+	 * mapped back from its stored image, or 0 if there is none
+	 */
+	private int tableMove(int color) {
+		int s = symmetry(color);
+		return Symmetry.move(TranspositionTable.move(table.probe(gameboard.key(color, s))), s);
+	}
+
+	/*
+	 * Sets the number of threads that search in parallel.  With one thread
+	 * (the default) the search runs on the caller's thread and is deterministic.
+	 */
+	public void setThreads(int n) {
+		n = Math.max(1, n);
+		if (n == threads) {
+			return;
+		}
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		threads = n;
+		helpers = new MachinePlayer[0];
+		if (monteCarlo != null) {
+			monteCarlo.shutdown();
+			monteCarlo = null;
+		}
+	}
+
+	/*
+	 * Stops pondering and shuts down the threads of a parallel or Monte Carlo
+	 * search, for a player that is done with its game.  The player can still
+	 * search afterwards, without pondering; the threads start again when
+	 * needed.
+	 */
+	public void close() {
+		setPondering(false);
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		if (monteCarlo != null) {
+			monteCarlo.shutdown();
+			monteCarlo = null;
+		}
+	}
+
+	/*
+	 * Return the statistics of the last chooseMove.  The object is reused by
+	 * the next chooseMove.
+	 */
+	public SearchStats getStats() {
+		return stats;
+	}
+
 	/*
 	 * MiniMax algorithm with alpha-beta pruning
-	 * Return a BestStep object that contains the best Move and best score
+	 * Return a BestStep object that contains the best Move and best score.
+	 * The BestStep belongs to this node's ply and is reused by the next node
+	 * searched at the same ply, so callers copy out what they need.
 	 */
 	private BestStep bestMove(int color, int alpha, int beta, int depth) {
-		BestStep myBest = new BestStep();
+		int ply = gameboard.ply();
+		BestStep myBest = steps[ply];
 		BestStep reply;
-		Move m;
+		int m;
 		int scoreEval;
+		myBest.move = 0;
+		myBest.depth = 0;
+		boolean mayPass = !passed; //no two null moves in a row
+		passed = false;
+		nodes++;
+		//the clock is checked every 1024 nodes; depth 1 always runs to the end
+		if (timeLimit > 0 && rootDepth > 1 && (nodes & 1023) == 0 && (System.nanoTime() - deadline > 0 || abort)) {
+			timeUp = true;
+		}
+		if (timeUp) {
+			return myBest;
+		}
+		if (SearchStats.ENABLED && ply > stats.maxPly) {
+			stats.maxPly = ply;
+		}
 		if (depth == 0) {
-			scoreEval = evaluate(whichSide);
+			if (SearchStats.ENABLED) {
+				stats.leaves++;
+			}
+			scoreEval = searchEvaluate();
 			myBest.score = scoreEval;
 			myBest.depth = 0;
 			return myBest;
 		}
-		scoreEval = evaluate(whichSide);
+		/*
+		 * a result stored at least this deep may settle the node right away;
+		 * otherwise its move is searched first
+		 */
+		int sym = symmetry(color);
+		long key = gameboard.key(color, sym);
+		int hashMove = 0;
+		if (table != null) {
+			long entry = table.probe(key);
+			if (entry != 0) {
+				hashMove = Symmetry.move(TranspositionTable.move(entry), sym);
+				int score = TranspositionTable.score(entry);
+				int bound = TranspositionTable.bound(entry);
+				if (depth < rootDepth && TranspositionTable.depth(entry) >= depth && 
+						(bound == TranspositionTable.EXACT || 
+						(bound == TranspositionTable.LOWER && score >= beta) || 
+						(bound == TranspositionTable.UPPER && score <= alpha))) {
+					myBest.score = score;
+					myBest.depth = TranspositionTable.scoreDepth(entry);
+					return myBest;
+				}
+			}
+		}
+		scoreEval = searchEvaluate();
 		if (scoreEval == 100 || scoreEval == -100) {
 			myBest.score = scoreEval;
 			myBest.depth = depth;
 			return myBest;
 		}
+		//futility: the static score is far enough past the bound that
+		//the side to move will not fall back behind it
+		if (futility && ply > 0 && depth == 1) {
+			if (color == whichSide ? scoreEval - FUTILITY_MARGIN >= beta
+					: scoreEval + FUTILITY_MARGIN <= alpha) {
+				if (SearchStats.ENABLED) {
+					stats.pruned++;
+				}
+				myBest.score = color == whichSide ? beta : alpha;
+				return myBest;
+			}
+		}
+		if (nullMove && mayPass && ply > 0 && depth > NULL_REDUCTION && nullCutoff(color, alpha, beta, depth, scoreEval)) {
+			if (SearchStats.ENABLED) {
+				stats.pruned++;
+			}
+			return myBest;
+		}
+		if (timeUp) {
+			return myBest;
+		}
+		myBest.move = 0;
+		myBest.depth = 0;
 		if (color == whichSide) {
 			myBest.score = alpha;
 		} else {
 			myBest.score = beta;
 		}
-		for (int i = 0; i < SIZE; i++) {
-			for (int j = 0; j < SIZE; j++) {
-				if (rounds < 20) {
-					m = new Move(i,j);
-					if (validMove(m, color)) {
-						if(color == whichSide) {
-							forceMove(m);
-						} else {
-							opponentMove(m);
-						}
-						reply = bestMove(1-color, alpha, beta, depth-1);
-						undo(m, color);
-						if ((color == whichSide) && (reply.score > myBest.score || (reply.score == myBest.score && reply.depth > myBest.depth))){
-							myBest.m = m;
-							myBest.score = reply.score;
-							myBest.depth = reply.depth;
-							alpha = reply.score;
-						} else if ((color == 1 - whichSide) && (reply.score < myBest.score ||(reply.score == myBest.score && reply.depth < myBest.depth) )) {
-							myBest.m = m;
-							myBest.score = reply.score;
-							myBest.depth = reply.depth;
-							beta = reply.score;
-						}
-						if (alpha >= beta) {
-							return myBest;
-						}
-					}
-				} else {
-					for (int x = 0; x < SIZE; x++) {
-						for (int y = 0; y < SIZE; y++) {
-							if (gameboard[x][y].get_color() == color) {
-								m = new Move(i, j, x, y);
-								if (validMove(m, color)) {
-									if(color == whichSide) {
-										forceMove(m);
-									} else {
-										opponentMove(m);
-									}
-									reply = bestMove(1-color, alpha, beta, depth-1);
-									undo(m, color);
-									if ((color == whichSide) && (reply.score > myBest.score || (reply.score == myBest.score && reply.depth > myBest.depth))) {
-										myBest.m = m;
-										myBest.score = reply.score;
-										myBest.depth = reply.depth;
-										alpha = reply.score;
-									} else if ((color == 1 - whichSide) && (reply.score < myBest.score || (reply.score == myBest.score && reply.depth < myBest.depth) )) {
-										myBest.m = m;
-										myBest.score = reply.score;
-										myBest.depth = reply.depth;
-										beta = reply.score;
-									}
-									if (alpha >= beta) {
-										return myBest;
-									}
-								}
-							}
-						}
-					}
+		//the window the moves are searched in, for typing the stored score:
+		//alpha and beta move as moves are found, this only when it narrows
+		int floor = alpha, ceiling = beta;
+		int[] moves = moveLists[ply];
+		int count = searchMoves(color, moves, hashMove, ply);
+		for (int k = 0; k < count; k++) {
+			m = moves[k];
+			//a helper of a parallel search picks up better root scores found by the others
+			if (sharedAlpha != null && ply == 1 && sharedAlpha.get() > alpha) {
+				alpha = sharedAlpha.get();
+				floor = Math.max(floor, alpha);
+				if (alpha >= beta) {
+					return myBest;
+				}
+			}
+			make(m, color);
+			reply = null;
+			if (reductions && k >= LATE_MOVES && depth >= LATE_DEPTH && !gameboard.touched(color)
+					&& !gameboard.touched(1 - color)) {
+				//a late quiet move: only searched in full if a shallower search says it is good
+				if (SearchStats.ENABLED) {
+					stats.reduced++;
 				}
+				reply = color == whichSide
+						? bestMove(1 - color, alpha, alpha + 1, depth - 2)
+						: bestMove(1 - color, beta - 1, beta, depth - 2);
+				if (!timeUp && (color == whichSide ? reply.score > alpha : reply.score < beta)) {
+					reply = null;
+				}
+			}
+			if (reply != null || timeUp) {
+				//the reduced search settled it
+			} else if (pvs && k > 0) {
+				reply = probe(color, alpha, beta, depth);
+			} else {
+				reply = bestMove(1-color, alpha, beta, depth-1);
+			}
+			undo(m, color);
+			if (timeUp) {
+				return myBest; //unwinding an aborted search; the result is thrown away
+			}
+			if ((color == whichSide) && (reply.score > myBest.score || (reply.score == myBest.score && reply.depth > myBest.depth))){
+				myBest.move = m;
+				myBest.score = reply.score;
+				myBest.depth = reply.depth;
+				alpha = reply.score;
+			} else if ((color == 1 - whichSide) && (reply.score < myBest.score ||(reply.score == myBest.score && reply.depth < myBest.depth) )) {
+				myBest.move = m;
+				myBest.score = reply.score;
+				myBest.depth = reply.depth;
+				beta = reply.score;
+			}
+			if (alpha >= beta) {
+				if (SearchStats.ENABLED) {
+					stats.cutoff(k);
+				}
+				rememberCutoff(color, m, ply, depth);
+				store(key, sym, myBest, depth, color == whichSide ? TranspositionTable.LOWER : TranspositionTable.UPPER);
+				return myBest;
 			}
 		}
+		//a score on the edge of the window is only a bound, even with a move:
+		//a reply that ties the edge at a greater depth also sets the move
+		if (myBest.score <= floor) {
+			store(key, sym, myBest, depth, TranspositionTable.UPPER);
+		} else if (myBest.score >= ceiling) {
+			store(key, sym, myBest, depth, TranspositionTable.LOWER);
+		} else {
+			store(key, sym, myBest, depth, TranspositionTable.EXACT);
+		}
 		return myBest;
 	}
 
+	/*
+	 * Null-move test for a node of 'color' with static score 'scoreEval':
+	 * return true if passing, and then a real search NULL_REDUCTION plies
+	 * shallower, both get past the bound that 'color' is trying to beat.
+	 * The result is left in the node's BestStep.  In the add phase a pass
+	 * must not let a side place more than its ten chips, so it is only
+	 * tried while the search cannot reach the step phase.
+	 */
+	private boolean nullCutoff(int color, int alpha, int beta, int depth, int scoreEval) {
+		boolean max = color == whichSide;
+		if ((max ? scoreEval < beta : scoreEval > alpha) || (rounds < 20 && rounds + depth >= 20)) {
+			return false;
+		}
+		gameboard.pass(color);
+		passed = true;
+		BestStep reply = max
+				? bestMove(1 - color, beta - 1, beta, depth - 1 - NULL_REDUCTION)
+				: bestMove(1 - color, alpha, alpha + 1, depth - 1 - NULL_REDUCTION);
+		passed = false;
+		gameboard.unmake();
+		if (timeUp || (max ? reply.score < beta : reply.score > alpha)) {
+			return false;
+		}
+		//the verification search reuses this node's BestStep, and may not pass
+		passed = true;
+		reply = bestMove(color, alpha, beta, depth - NULL_REDUCTION);
+		passed = false;
+		return !timeUp && (max ? reply.score >= beta : reply.score <= alpha);
+	}
 
 	/*
-	 * Restore the 'color' chip on the grid
+	 * Search the reply to a move of 'color' that is not the first at its
+	 * node: with a null window just past the bound 'color' is trying to
+	 * improve, and again with the full window only if the move improves it
+	 * without causing a cutoff.
 	 */
-	private void undo(Move m, int color) {
-		removeChip(m.x1, m.y1, color);
-		if (m.moveKind == Move.STEP) {
-			addChip(m.x2, m.y2, color);
+	private BestStep probe(int color, int alpha, int beta, int depth) {
+		BestStep reply;
+		if (color == whichSide) {
+			reply = bestMove(1 - color, alpha, alpha + 1, depth - 1);
+			if (!timeUp && reply.score > alpha && reply.score < beta) {
+				if (SearchStats.ENABLED) {
+					stats.researches++;
+				}
+				reply = bestMove(1 - color, alpha, beta, depth - 1);
+			}
+		} else {
+			reply = bestMove(1 - color, beta - 1, beta, depth - 1);
+			if (!timeUp && reply.score < beta && reply.score > alpha) {
+				if (SearchStats.ENABLED) {
+					stats.researches++;
+				}
+				reply = bestMove(1 - color, alpha, beta, depth - 1);
+			}
 		}
+		return reply;
+	}
+
+	/*
+	 * evaluate(whichSide) for the search, timed when SearchStats are on
+	 */
+	private int searchEvaluate() {
+		if (!SearchStats.ENABLED) {
+			return cachedEvaluate();
+		}
+		long start = System.nanoTime();
+		int score = cachedEvaluate();
+		stats.evalNanos += System.nanoTime() - start;
+		stats.evaluations++;
+		return score;
+	}
+
+	//evaluate(whichSide), from the evaluation cache if it has the score
+	private int cachedEvaluate() {
+		if (evalCache == null) {
+			return evaluate(whichSide);
+		}
+		long key = gameboard.key(whichSide, symmetry(whichSide));
+		int score = evalCache.probe(key);
+		if (score == EvalCache.MISS) {
+			score = evaluate(whichSide);
+			evalCache.store(key, score);
+		}
+		return score;
+	}
+
+	/*
+	 * Fill 'moves' with the legal moves of 'color' in search order and return
+	 * how many there are; timed when SearchStats are on
+	 */
+	private int searchMoves(int color, int[] moves, int hashMove, int ply) {
+		long start = SearchStats.ENABLED ? System.nanoTime() : 0;
+		int count = legalMoves(color, moves);
+		orderMoves(color, moves, count, hashMove, ply);
+		if (SearchStats.ENABLED) {
+			stats.moveNanos += System.nanoTime() - start;
+		}
+		return count;
+	}
+
+	//Record a bestMove result in the transposition table, if there is one,
+	//under 'key', the key of the position's image under symmetry 'sym'
+	private void store(long key, int sym, BestStep best, int depth, int bound) {
+		if (table != null) {
+			table.store(key, best.score, best.depth, depth, bound, Symmetry.move(best.move, sym));
+		}
+	}
+
+	/*
+	 * Make sure the per-ply BestSteps and move lists reach 'plies' plies, so
+	 * that the search itself allocates nothing.
+	 */
+	private void reserve(int plies) {
+		if (steps.length > plies) {
+			return;
+		}
+		BestStep[] newSteps = new BestStep[plies + 1];
+		int[][] newLists = new int[plies + 1][];
+		int[][] newKillers = new int[plies + 1][];
+		for (int i = 0; i <= plies; i++) {
+			newSteps[i] = i < steps.length ? steps[i] : new BestStep();
+			newLists[i] = i < moveLists.length ? moveLists[i] : new int[MAX_MOVES];
+			newKillers[i] = i < killers.length ? killers[i] : new int[2];
+		}
+		steps = newSteps;
+		moveLists = newLists;
+		killers = newKillers;
+	}
+
+	/*
+	 * Fill 'moves' with every legal move of 'color', packed by Board.pack, in
+	 * board order.  Return the number of moves.
+	 */
+	int legalMoves(int color, int[] moves) {
+		if (rounds < 20) {
+			return generator.adds(gameboard, color, moves);
+		}
+		return generator.steps(gameboard, color, moves);
+	}
+
+	/*
+	 * Sort the first 'count' moves so the likeliest cutoffs come first:
+	 * hashMove (the transposition table's move), then the two killers of this
+	 * ply, then the rest by history score.  Ties keep board order.
+	 */
+	private void orderMoves(int color, int[] moves, int count, int hashMove, int ply) {
+		int[] killer = killers[ply];
+		int[] sorted = moveLists[moveLists.length - 1];
+		long priority;
+		//moves with some priority get a sort key; the others keep board order
+		//and go straight to the back of 'sorted'
+		int front = 0, back = count;
+		for (int k = count - 1; k >= 0; k--) {
+			int m = moves[k];
+			if (m == hashMove) {
+				priority = 1L << 40;
+			} else if (m == killer[0]) {
+				priority = (1L << 40) - 1;
+			} else if (m == killer[1]) {
+				priority = (1L << 40) - 2;
+			} else {
+				priority = history[color][m & 0xFFF];
+			}
+			if (priority == 0) {
+				sorted[--back] = m;
+			} else {
+				//ascending keys: highest priority first, then lowest index
+				orderKeys[front++] = -priority << 16 | k;
+			}
+		}
+		sortKeys(orderKeys, front);
+		for (int k = 0; k < front; k++) {
+			sorted[k] = moves[(int) (orderKeys[k] & 0xFFFF)];
+		}
+		System.arraycopy(sorted, 0, moves, 0, count);
+	}
+
+	/*
+	 * Sort the first n keys ascending.  Arrays.sort would allocate work
+	 * arrays when the keys come in long runs, which they do once the history
+	 * table fills up; only moves with some priority are sorted, so an
+	 * insertion sort is enough.
+	 */
+	private static void sortKeys(long[] keys, int n) {
+		for (int i = 1; i < n; i++) {
+			long key = keys[i];
+			int j = i;
+			while (j > 0 && keys[j - 1] > key) {
+				keys[j] = keys[j - 1];
+				j--;
+			}
+			keys[j] = key;
+		}
+	}
+
+	/*
+	 * Move m of 'color' caused a beta cutoff 'depth' plies from the leaves:
+	 * make it the first killer of its ply and credit it in the history table.
+	 */
+	private void rememberCutoff(int color, int m, int ply, int depth) {
+		int[] killer = killers[ply];
+		if (killer[0] != m) {
+			killer[1] = killer[0];
+			killer[0] = m;
+		}
+		history[color][m & 0xFFF] += depth * depth;
+	}
+
+	/*
+	 * Carry the killers and history of the previous chooseMove over to a
+	 * search 'plies' plies further into the game.  History is halved so that
+	 * the new search's cutoffs soon outweigh the old ones.
+	 */
+	private void ageOrdering(int plies) {
+		for (int i = 0; i < killers.length; i++) {
+			int from = i + plies;
+			killers[i][0] = from < killers.length ? killers[from][0] : 0;
+			killers[i][1] = from < killers.length ? killers[from][1] : 0;
+		}
+		for (int[] h : history) {
+			for (int i = 0; i < h.length; i++) {
+				h[i] >>= 1;
+			}
+		}
+	}
+
+	/*
+	 * Forget the killers and history of the previous chooseMove
+	 */
+	private void clearOrdering() {
+		for (int i = 0; i < killers.length; i++) {
+			killers[i][0] = 0;
+			killers[i][1] = 0;
+		}
+		java.util.Arrays.fill(history[BLACK], 0);
+		java.util.Arrays.fill(history[WHITE], 0);
+	}
+
+	/*
+	 * Play the packed move m for 'color' during a search.  Nothing is allocated;
+	 * the board records the change on its undo journal.
+	 */
+	void make(int m, int color) {
+		if ((m >>> 12) == Move.ADD) {
+			rounds++;
+		}
+		gameboard.make(m, color);
+	}
+
+	/*
+	 * Take back the packed move m, the last move made by 'color'
+	 */
+	void undo(int m, int color) {
+		if ((m >>> 12) == Move.ADD) {
+			rounds--;
+		}
+		gameboard.unmake();
 	}
 
 	/*
@@ -164,154 +808,126 @@ public class MachinePlayer extends Player {
 				removeChip(m.x2, m.y2, color);
 				addChip(m.x1, m.y1, color);
 			} 
+			follow(Board.pack(m));
 			return true;
 		}
 		return false;
 	}
 
 	/*
-	 * Return true if a Move of 'color' follows the rule (a valid move)
-	 * Return false otherwise
+	 * The packed move 'code' was played in the game: advance along the
+	 * expected line if it was the next move of it, otherwise leave the line
 	 */
-	private boolean validMove(Move m, int color) {
-		if( m.x1 < 0 || m.x1 > 7 || m.x2 < 0 || m.x2 > 7 || m.y1 < 0 || m.y1 > 7 || m.y2 < 0|| m.y2 >7 ) {
-			return false;			
-		}
-		/*
-		 * new location should empty
-		 */
-		if(gameboard[m.x1][m.y1].get_color() != EMPTY)  {
-			return false;			
-		}
-		/*
-		 * goal area for white
-		 */
-		if(color == WHITE && (m.y1 == 0 || m.y1 == SIZE-1)) {
-			return false;
+	private void follow(int code) {
+		played++;
+		if (lineNext >= 0 && lineNext < lineLength && line[lineNext] == code) {
+			lineNext++;
+		} else {
+			lineNext = -1;
 		}
-		/*
-		 * goal area for black
-		 */
-		if(color == BLACK && (m.x1 == 0 || m.x1 == SIZE-1)){
-			return false;
+	}
+
+	/*
+	 * Remember the line of play the table expects from the root, following
+	 * its moves for at most 'depth' plies
+	 */
+	private void rememberLine(int depth) {
+		if (line.length < depth) {
+			line = new int[depth];
 		}
-		/*
-		 * check if Move m  and neighbors contains 
-		 * two or more chips in connected group  
-		 */
-		int connected = 0;
-		int neighbor_x = 0;
-		int neighbor_y = 0;
-		for (int i = m.x1 - 1; i <= m.x1 + 1; i++ ) {
-			for(int j= m.y1 - 1; j <= m.y1+1; j++) {
-				if(i >= 0 && i <= 7 && j >= 0 && j <= 7 ) {
-					if(gameboard[i][j].get_color() == color &&
-							(m.moveKind != Move.STEP || m.x2!=i || m.y2 != j)) {
-						connected++;
-						neighbor_x = i;
-						neighbor_y = j;
-					}
-				}
+		lineLength = 0;
+		lineNext = 0;
+		int color = whichSide;
+		while (lineLength < depth) {
+			int m = tableMove(color);
+			if (m == 0 || !isLegal(m, color)) {
+				break;
 			}
+			line[lineLength++] = m;
+			make(m, color);
+			color = 1 - color;
 		}
-		if(connected > 1) {
-			return false;
+		for (int i = lineLength - 1; i >= 0; i--) {
+			undo(line[i], whichSide ^ (i & 1));
 		}
-		if(connected == 1) {
-			for(int i1 = neighbor_x-1; i1 <= neighbor_x + 1; i1++) {
-				for(int j1 = neighbor_y - 1; j1 <= neighbor_y + 1; j1++) {
-					if(i1 >= 0 && i1 <= 7 && j1 >=0 && j1 <=7){
-						if(gameboard[i1][j1].get_color() == color && 
-								(neighbor_x != i1 || neighbor_y != j1) && 
-								(m.moveKind != Move.STEP || m.x2 != i1 || m.y2 != j1) ) {
-							return false;
-						}
-					}
-				}
+	}
 
-			}
-		}
-		return true;
-	} 
 	/*
-	 * Helper method for depth first search
-	 * Checks if the current node is visited in the previous paths
-	 * Return True if it's visited, False otherwise
+	 * Put the rest of the expected line back into the table for any
+	 * position along it that has no entry.  The entries have depth 0, so
+	 * they only order moves.
 	 */
-	public boolean isVisited(GameNode[] path, int depth, GameNode curr_loc) {
-		for (int i = 1; i <= depth-1; i++) {
-			if (path[i] == curr_loc) {
-				return false;
+	private void restoreLine() {
+		//the line starts with a move of this player, so with it to move again
+		//the game must have followed an even number of its moves
+		if (lineNext < 0 || (lineNext & 1) != 0) {
+			return;
+		}
+		int color = whichSide;
+		int made = lineNext;
+		for (; made < lineLength; made++) {
+			int m = line[made];
+			if (!isLegal(m, color)) {
+				break;
+			}
+			int s = symmetry(color);
+			long key = gameboard.key(color, s);
+			if (table.probe(key) == 0) {
+				table.store(key, 0, 0, 0, TranspositionTable.EXACT, Symmetry.move(m, s));
 			}
+			make(m, color);
+			color = 1 - color;
+		}
+		for (int i = made - 1; i >= lineNext; i--) {
+			color = 1 - color;
+			undo(line[i], color);
 		}
-		return true;
+	}
+
+	//Return true if the packed move m is legal for 'color' in this phase
+	private boolean isLegal(int m, int color) {
+		boolean step = (m >>> 12) == Move.STEP;
+		return step == (rounds >= 20) && gameboard.canMove(m & 63, step ? (m >>> 6) & 63 : -1, color);
 	}
 
 	/*
-	 * Use depth first search to find network
-	 * Will update the howmanyPath of the chip in the goal area
-	 * Return True if a path exists and set the howmanyPath variable to 100 (winning indicator), False otherwise
+	 * Return true if a Move of 'color' follows the rule (a valid move)
+	 * Return false otherwise
 	 */
-	public boolean network_dfs (GameNode loc, int depth, int direction, GameNode[] path) {
-		if (loc.get_x() == 7 || loc.get_y() == 7) {
-			howmanyPath++;
+	boolean validMove(Move m, int color) {
+		if( m.x1 < 0 || m.x1 > 7 || m.x2 < 0 || m.x2 > 7 || m.y1 < 0 || m.y1 > 7 || m.y2 < 0|| m.y2 >7 ) {
+			return false;			
 		}
-		if ((loc.get_x() == 7 || loc.get_y() == 7) && depth >= 6) {
-			howmanyPath = 100;
-			return true;
+		/*
+		 * new location should empty
+		 */
+		if(gameboard.colorAt(m.x1, m.y1) != EMPTY)  {
+			return false;			
 		}
-		if (loc.get_x() != 7 && loc.get_y() != 7) {
-			for (int i = 0; i < SIZE; i++) {
-				if (loc.neighbors[i] != null && 
-				loc.neighbors[i].get_x() != 0 && 
-				loc.neighbors[i].get_y() != 0 && 
-				isVisited(path, depth, loc.neighbors[i]) && 
-				direction != i) {
-					//System.out.println(depth);
-					path[depth] = loc.neighbors[i];
-					if (network_dfs(loc.neighbors[i], depth+1, i, path)) {
-						return true;
-					}
-				}
+		/*
+		 * a step must move one of our own chips
+		 */
+		int from = -1;
+		if (m.moveKind == Move.STEP) {
+			if (gameboard.colorAt(m.x2, m.y2) != color) {
+				return false;
 			}
+			from = Board.square(m.x2, m.y2);
 		}
-		return false;
-	}
-
+		/*
+		 * goal areas of the opponent, and no group of 
+		 * three or more connected chips
+		 */
+		return gameboard.canPlace(Board.square(m.x1, m.y1), from, color);
+	} 
 	/*
 	 * Helper method for evaluate
 	 * Return 100 if 'color' player wins, else will return the max number of paths
-	 * between the two goal areas
+	 * between the two goal areas.  The board keeps the count until the
+	 * connections of 'color' change.
 	 */
 	public int calcWin(int color) {
-		int maxPath = 0;
-		GameNode[] path = new GameNode[10], moves = new GameNode[10];
-
-		//read-in the goal areas of 'color'
-		if (color == WHITE) {
-			for (int i = 0; i < 7; i++) {
-				moves[i] = gameboard[0][i];
-			}
-		} else {
-			for (int i = 0; i < 7; i++) {
-				moves[i] = gameboard[i][0];
-			}
-		}
-		//start find network with dfs from the goal areas
-		for (int i = 1; i < 7; i++) {
-			if (moves[i].get_color() != EMPTY) {
-				path[0] = moves[i];
-				howmanyPath = 0;
-				if (network_dfs(moves[i], 1, -1, path)) { //if successfully finds a path, game ends
-					maxPath = howmanyPath;
-					break;
-				}
-				if (maxPath < howmanyPath) {
-					maxPath = howmanyPath;
-				}
-			}
-		}
-		return maxPath;
+		return symmetric ? gameboard.symmetricPaths(color) : gameboard.paths(color);
 	}
 
 	/*
@@ -328,6 +944,9 @@ public class MachinePlayer extends Player {
 		 * currNbr = 'this' player's total number of neighbors
 		 * otherNbr = opponent's total number of neighbors
 		 */
+		if (Board.CHECK) {
+			gameboard.check();
+		}
 
 		currPath = calcWin(color);
 		if (currPath == 100) {
@@ -350,356 +969,377 @@ public class MachinePlayer extends Player {
 	 * returns how many neighbor(s) all 'color' chips have
 	 */
 	public int howManyNeighbors(int color) {
-		int count;
-		//int k = 0;
-		int total = 0;
-		int colorLoc = 0;
-		GameNode[] sameColorChip = new GameNode[10];
-
-		//store all the 'color' chips into an array
-		for (int i = 0; i < SIZE; i++) {
-			for (int j = 0; j < SIZE; j++) {
-				if (gameboard[i][j].get_color() == color) {
-					sameColorChip[colorLoc] = gameboard[i][j];
-					colorLoc++;
-				}
-			}
-		}
-
-		for (int i = 0; i <= 9; i++) {
-			if (sameColorChip[i] != null) {
-				count = 0;
-				for (int j = 0; j < SIZE; j++) {
-					if (sameColorChip[i].neighbors[j] != null && sameColorChip[i].neighbors[j].get_color() != EMPTY) {
-						count++;
-					}
-				}
-				total = total + count;
-			} else {
-				break;
-			}
-		}
-
-		
-		/*while (sameColorChip[k] != null) {
-			count = 0;
-			for (int j = 0; j < SIZE; j++) {
-				if (sameColorChip[k].neighbors[j] != null && sameColorChip[k].neighbors[j].get_color() != -1) {
-					count++;
-				}
-			}
-			total = total + count;
-			k++;
-		} */
+		//every connected pair counts once for each of its two chips
+		return gameboard.edges[color] * 2;
+	}
 
-		return total;
+	//Add a 'color'chip to the location (x, y) on the gameboard
+	void addChip(int x, int y, int color) {
+		rounds++;
+		gameboard.add(Board.square(x, y), color);
 	}
 
-	//All the neighbor update functions
-	//neighbors are defined as a pair of same color
-	/* 
-	 * Update the upper and lower neighbor of GameNode at (x_cor, y_cor),
-	 * It also updates upper and lower chips' neighbors to
-	 * GameNode (x_cor, y_cor).  
-	 */
-	private void upperLowerUpdate(int x_cor, int y_cor, int color, int operation) {
-		GameNode tempNode = new GameNode();
-
-		//lower neighbor update
-		int temp_y = y_cor - 1;
-		while(0 <= x_cor && x_cor < SIZE && 0 <= temp_y && temp_y < SIZE) {
-			if (gameboard[x_cor][temp_y].get_color() == color && x_cor != 0 && x_cor != 7 ) {
-				if (operation == GameNode.ADD) {
-					gameboard[x_cor][y_cor].neighbors[GameNode.LOWER] = gameboard[x_cor][temp_y];
-					gameboard[x_cor][temp_y].neighbors[GameNode.UPPER] = gameboard[x_cor][y_cor];
-				} else {
-					gameboard[x_cor][temp_y].neighbors[GameNode.UPPER] = null;
-				}
-				tempNode = gameboard[x_cor][temp_y];
-				break;
-			}
+	//Remove a 'color'chip to the location(x, y) from the gameboard
+	void removeChip(int x, int y, int color) {
+		rounds--;
+		gameboard.remove(Board.square(x, y), color); //become empty after removal
+	}
 
-			if (gameboard[x_cor][temp_y].get_color() == 1 - color) {
-				tempNode = gameboard[x_cor][temp_y];
-				break;
+	// Returns a new move by "this" player.  Internally records the move (updates
+	// the internal game board) as a move by "this" player.  Returns null if
+	// this player has no legal move.
+	@Override
+	public Move chooseMove() {
+		Move m = choose();
+		if (ponder != null && m != null) {
+			//the reply our own search expected, if the table still has it
+			int guess = 0;
+			if (table != null) {
+				guess = tableMove(1 - whichSide);
 			}
-			temp_y--;
+			ponder.start(this, whichSide, sDepth, rounds, guess);
 		}
+		return m;
+	}
 
-		//upper neighbor update
-		temp_y = y_cor + 1;
-		while(0 <= x_cor && x_cor < SIZE && 0 <= temp_y && temp_y < SIZE) {
-			if (gameboard[x_cor][temp_y].get_color() == color && x_cor != 0 && x_cor != 7) {
-				if (operation == GameNode.ADD) {
-					gameboard[x_cor][y_cor].neighbors[GameNode.UPPER] = gameboard[x_cor][temp_y];
-					gameboard[x_cor][temp_y].neighbors[GameNode.LOWER] = gameboard[x_cor][y_cor];
-				} else {
-					gameboard[x_cor][temp_y].neighbors[GameNode.LOWER] = null;
-				}
-				if (tempNode.get_color() == color) {
-					if (operation == GameNode.DELETE) {
-						tempNode.neighbors[GameNode.UPPER] = gameboard[x_cor][temp_y];
-						gameboard[x_cor][temp_y].neighbors[GameNode.LOWER] = tempNode;
-					}
-				}
-				break;
+	private Move choose() {
+		Move m;
+		stats.clear();
+		if (book != null) {
+			//the book holds canonical positions whatever the table does
+			int s = gameboard.canonical(whichSide);
+			int code = Symmetry.move(book.probe(gameboard.key(whichSide, s)), s);
+			//a hash collision could name an illegal move, which forceMove refuses
+			if (code != 0 && forceMove(m = Board.unpack(code))) {
+				stats.fromBook = true;
+				return m;
 			}
-			if (gameboard[x_cor][temp_y].get_color() == 1-color) {
-				if (tempNode.get_color() == 1-color) {
-					if (operation == GameNode.ADD) {
-						tempNode.neighbors[GameNode.UPPER] = null;
-						gameboard[x_cor][temp_y].neighbors[GameNode.LOWER] = null;
-					} else {
-						tempNode.neighbors[GameNode.UPPER] = gameboard[x_cor][temp_y];
-						gameboard[x_cor][temp_y].neighbors[GameNode.LOWER] = tempNode;
-					}
-				}
-				break;
+		}
+		if(rounds < 2) {
+			if(whichSide == WHITE){
+				m = new Move(0,3);
+				forceMove(m);
+				return m;
+			} else {
+				m = new Move(3, 0);
+				forceMove(m);
+				return m;
 			}
-			temp_y++;
 		}
-
-	}
-
-	/* 
-	 * Update the left and right neighbor of GameNode at (x_cor, y_cor).
-	 * It also updates the left and right chips' neighbors to
-	 * GameNode at (x_cor, y_cor).
-	 */
-	private void leftRightUpdate(int x_cor, int y_cor, int color, int operation){
-		GameNode tempNode = new GameNode();
-
-		//update right neighbors
-		int temp_x = x_cor + 1;
-		while (0 <= temp_x && temp_x < SIZE && 0 <= y_cor && y_cor < SIZE){
-			if (gameboard[temp_x][y_cor].get_color() == color && y_cor !=0 && y_cor != 7){
-				if (operation == GameNode.ADD){
-					gameboard[x_cor][y_cor].neighbors[GameNode.RIGHT] = gameboard[temp_x][y_cor];
-					gameboard[temp_x][y_cor].neighbors[GameNode.LEFT] = gameboard[x_cor][y_cor];
-				}else{
-					gameboard[temp_x][y_cor].neighbors[GameNode.LEFT] = null;
-				}
-				tempNode = gameboard[temp_x][y_cor];
-				break;
+		if (solverMoves > 0) {
+			if (solver == null) {
+				solver = new ProofSearch(SOLVER_TABLE_SIZE);
+				solver.setSymmetry(symmetric);
 			}
-			if (gameboard[temp_x][y_cor].get_color() == 1-color){
-				tempNode = gameboard[temp_x][y_cor];
-				break;
+			int win = solver.prove(gameboard, whichSide, solverMoves, solverBudget);
+			stats.solverNodes = solver.nodes;
+			if (win != 0) {
+				stats.proven = true;
+				m = Board.unpack(win);
+				forceMove(m);
+				return m;
 			}
-			temp_x++;
 		}
+		long start = System.nanoTime();
+		int code = ponder == null ? 0 : ponder.finish(timeLimit);
+		if (code != 0) {
+			SearchStats pondered = ponder.stats();
+			stats.add(pondered);
+			stats.nodes = pondered.nodes;
+			stats.depth = pondered.depth;
+			stats.tableProbes = pondered.tableProbes;
+			stats.tableHits = pondered.tableHits;
+			stats.nanos = System.nanoTime() - start; //only the wait counts
+			stats.pondered = true;
+		} else {
+			code = search();
+		}
+		if (code == 0) {
+			return null; //no legal move
+		}
+		m = Board.unpack(code);
+		forceMove(m);
+		return m;
+	} 
 
-		//update left neighbors
-		temp_x = x_cor - 1;
-		while (0 <= temp_x && temp_x < SIZE && 0 <= y_cor && y_cor < SIZE){
-			if (gameboard[temp_x][y_cor].get_color() == color && y_cor != 0 && y_cor != 7){
-				if (operation == GameNode.ADD){
-					gameboard[x_cor][y_cor].neighbors[GameNode.LEFT] = gameboard[temp_x][y_cor];
-					gameboard[temp_x][y_cor].neighbors[GameNode.RIGHT] = gameboard[x_cor][y_cor];
-				}else{
-					gameboard[temp_x][y_cor].neighbors[GameNode.RIGHT] = null;
-				}
-				if (tempNode.get_color() == color){
-					if (operation != GameNode.ADD){
-						tempNode.neighbors[GameNode.LEFT] = gameboard[temp_x][y_cor];
-						gameboard[temp_x][y_cor].neighbors[GameNode.RIGHT] = tempNode;
-					}
-				}
-				break;
-			}
-			if (gameboard[temp_x][y_cor].get_color() == 1-color){
-				if (tempNode.get_color() == 1-color){
-					if (operation == GameNode.ADD){
-						tempNode.neighbors[GameNode.LEFT] = null;
-						gameboard[temp_x][y_cor].neighbors[GameNode.RIGHT] = null;
-					}else{
-						tempNode.neighbors[GameNode.LEFT] = gameboard[temp_x][y_cor];
-						gameboard[temp_x][y_cor].neighbors[GameNode.RIGHT] = tempNode;
-					}
-				}
-				break;
-			}
-			temp_x--;
+	/*
+	 * Set this player up on a copy of 'board' with 'rounds' chips, for a
+	 * search started from another player's position.  Pondering on the old
+	 * position is stopped.
+	 */
+	void setUp(Board board, int rounds) {
+		if (ponder != null) {
+			ponder.cancel(); //it pondered on the position being replaced
 		}
+		gameboard.copyFrom(board);
+		this.rounds = rounds;
+		abort = false;
+		lineNext = -1;
 	}
 
 	/*
-	 * Update the neighbors of GameNode at (x_cor, y_cor) in
-	 * LowerRight and UpperLeft direction.
-	 * It also updates the affected upper left and lower right chips'
-	 * neighbors to GameNode at (x_cor, y_cor).
+	 * Stop the search in progress on another thread as soon as it next looks
+	 * at the clock.  With iterative deepening it returns the result of the
+	 * deepest search that finished.  Stays in effect until setUp.
 	 */
-	private void lRightuLeftUpdate(int x_cor, int y_cor, int color, int operation){
-		GameNode tempNode = new GameNode();
+	void abort() {
+		abort = true;
+	}
 
-		//update lower right neighbors
-		int temp_x = x_cor + 1, temp_y = y_cor - 1;
-		while (0 <= temp_x && temp_x < SIZE && 0<=temp_y && temp_y < SIZE){
-			if (gameboard[temp_x][temp_y].get_color() == color){
-				if (operation == GameNode.ADD){
-					gameboard[x_cor][y_cor].neighbors[GameNode.LOWRIGHT] = gameboard[temp_x][temp_y];
-					gameboard[temp_x][temp_y].neighbors[GameNode.UPLEFT] = gameboard[x_cor][y_cor];
-				}else{
-					gameboard[temp_x][temp_y].neighbors[GameNode.UPLEFT] = null;
-				}
-				tempNode = gameboard[temp_x][temp_y];
-				break;
-			}
-			if (gameboard[temp_x][temp_y].get_color() == 1-color){
-				tempNode = gameboard[temp_x][temp_y];
-				break;
+	//Return true if another thread has asked the search to stop
+	boolean aborted() {
+		return abort;
+	}
+
+	/*
+	 * Search the current position the way chooseMove does, but without the
+	 * opening book or the fixed first moves.  Return the best move, packed by
+	 * Board.pack; it is not played.
+	 */
+	int search() {
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		long start = System.nanoTime();
+		nodes = 0;
+		if (engine == MONTE_CARLO) {
+			if (monteCarlo == null) {
+				monteCarlo = new MonteCarlo(this, threads);
 			}
-			temp_x++;
-			temp_y--;
+			int move = monteCarlo.search(gameboard, rounds, whichSide, playouts, timeLimit);
+			//a playout counts as a node, and the depth is the tree's
+			nodes = monteCarlo.playouts;
+			stats.nodes = nodes;
+			stats.depth = monteCarlo.depth;
+			stats.nanos = System.nanoTime() - start;
+			event.report(whichSide, Board.unpack(move), stats);
+			return move;
 		}
-
-		//update upper left neighbors
-		temp_x = x_cor - 1;
-		temp_y = y_cor + 1;
-		while (0 <= temp_x && temp_x < SIZE && 0<=temp_y && temp_y < SIZE){
-			if (gameboard[temp_x][temp_y].get_color() == color){
-				if (operation == GameNode.ADD){
-					gameboard[x_cor][y_cor].neighbors[GameNode.UPLEFT] = gameboard[temp_x][temp_y];
-					gameboard[temp_x][temp_y].neighbors[GameNode.LOWRIGHT] = gameboard[x_cor][y_cor];
-				}else {
-					gameboard[temp_x][temp_y].neighbors[GameNode.LOWRIGHT] = null;
-				}
-				if (tempNode.get_color() == color){
-					if (operation != GameNode.ADD){
-						tempNode.neighbors[GameNode.UPLEFT] = gameboard[temp_x][temp_y];
-						gameboard[temp_x][temp_y].neighbors[GameNode.LOWRIGHT] = tempNode;
-					}
-				}
-				break;
+		BestStep best;
+		reserve(sDepth + 1);
+		long evalHits = evalCache == null ? 0 : evalCache.hits;
+		long evalMisses = evalCache == null ? 0 : evalCache.misses;
+		if (keep) {
+			if (table != null) {
+				table.newSearch();
+				restoreLine();
 			}
-			if (gameboard[temp_x][temp_y].get_color() == 1-color){
-				if (tempNode.get_color() == 1-color){
-					if (operation == GameNode.ADD ){
-						tempNode.neighbors[GameNode.UPLEFT] = null;
-						gameboard[temp_x][temp_y].neighbors[GameNode.LOWRIGHT] = null;
-					}else{
-						tempNode.neighbors[GameNode.UPLEFT] = gameboard[temp_x][temp_y];
-						gameboard[temp_x][temp_y].neighbors[GameNode.LOWRIGHT] = tempNode;
-					}
-				}
-				break;
+			ageOrdering(played);
+			for (int i = 0; i < helpers.length; i++) {
+				helpers[i].ageOrdering(played);
+			}
+		} else {
+			if (table != null) {
+				table.clear();
 			}
-			temp_x--;
-			temp_y++;
+			clearOrdering();
+			for (int i = 0; i < helpers.length; i++) {
+				helpers[i].clearOrdering();
+			}
+		}
+		if (timeLimit > 0) {
+			best = deepen();
+		} else {
+			best = aspirate(sDepth, lastScore);
+			stats.depth = sDepth;
+		}
+		lastScore = best.move != 0 ? best.score : NO_SCORE;
+		stats.nanos = System.nanoTime() - start;
+		stats.nodes = nodes;
+		if (table != null) {
+			stats.tableProbes = table.probes;
+			stats.tableHits = table.hits;
+		}
+		if (evalCache != null) {
+			stats.evalHits = evalCache.hits - evalHits;
+			stats.evalProbes = stats.evalHits + evalCache.misses - evalMisses;
+		}
+		played = 0;
+		if (keep && table != null) {
+			rememberLine(stats.depth);
+		} else {
+			lineNext = -1;
 		}
+		event.report(whichSide, Board.unpack(best.move), stats);
+		return best.move;
 	}
 
 	/*
-	 * Update the neighbors of GameNode at (x_cor, y_cor) in
-	 * UpperRight and LowerLeft direction.
-	 * It also updates the affected upper left and lower right chips'
-	 * neighbors to GameNode at (x_cor, y_cor).
+	 * Iterative deepening: search one ply deeper at a time until sDepth is done,
+	 * a win or loss is found, or timeLimit milliseconds have passed.
+	 * Return the result of the deepest search that finished.  An aborted
+	 * search has undone all of its moves, so gameboard and rounds are unchanged.
 	 */
-	private void uRightlLeftUpdate(int x_cor, int y_cor, int color, int operation){
-		GameNode tempNode = new GameNode();
-
-		//update upper right neighbors
-		int temp_x = x_cor + 1, temp_y = y_cor + 1;
-		while (0 <= temp_x && temp_x < SIZE && 0 <= temp_y && temp_y < SIZE){
-			if (gameboard[temp_x][temp_y].get_color() == color){
-				if (operation == GameNode.ADD){
-					gameboard[x_cor][y_cor].neighbors[GameNode.UPRIGHT] = gameboard[temp_x][temp_y];
-					gameboard[temp_x][temp_y].neighbors[GameNode.LOWLEFT] = gameboard[x_cor][y_cor];
-				}else {
-					gameboard[temp_x][temp_y].neighbors[GameNode.LOWLEFT] = null;
-				}
-				tempNode = gameboard[temp_x][temp_y];
+	private BestStep deepen() {
+		BestStep best = new BestStep(), result;
+		deadline = System.nanoTime() + timeLimit * 1000000L;
+		timeUp = false;
+		//scores swing between odd and even depths, so each iteration's window
+		//is centred on the score of the one two plies shallower
+		int[] scores = new int[sDepth + 1];
+		for (int depth = 1; depth <= sDepth; depth++) {
+			result = aspirate(depth, depth > 2 ? scores[depth - 2] : NO_SCORE);
+			if (timeUp) {
 				break;
 			}
-			if (gameboard[temp_x][temp_y].get_color() == 1-color){
-				tempNode = gameboard[temp_x][temp_y];
+			scores[depth] = result.score;
+			best.score = result.score;
+			best.depth = result.depth;
+			best.move = result.move;
+			stats.depth = depth;
+			if (best.score == 100 || best.score == -100 || System.nanoTime() - deadline > 0 || abort) {
 				break;
 			}
-			temp_x++;
-			temp_y++;
 		}
+		timeUp = false;
+		return best;
+	}
 
-		//update lower left neighbors
-		temp_x = x_cor - 1;
-		temp_y = y_cor - 1;
-		while (0 <= temp_x && temp_x < SIZE && 0 <= temp_y && temp_y < SIZE){
-			if (gameboard[temp_x][temp_y].get_color() == color){
-				if (operation == GameNode.ADD){
-					gameboard[x_cor][y_cor].neighbors[GameNode.LOWLEFT] = gameboard[temp_x][temp_y];
-					gameboard[temp_x][temp_y].neighbors[GameNode.UPRIGHT] = gameboard[x_cor][y_cor];
-				}else{
-					gameboard[temp_x][temp_y].neighbors[GameNode.UPRIGHT] = null;
-				}
-				if (tempNode.get_color() == color){
-					if (operation != GameNode.ADD){
-						tempNode.neighbors[GameNode.LOWLEFT] = gameboard[temp_x][temp_y];
-						gameboard[temp_x][temp_y].neighbors[GameNode.UPRIGHT] = tempNode;
-					}
-				}
-				break;
-			}
-			if (gameboard[temp_x][temp_y].get_color() == 1-color){
-				if (tempNode.get_color() == 1-color){
-					if (operation == GameNode.ADD){
-						tempNode.neighbors[GameNode.LOWLEFT] = null;
-						gameboard[temp_x][temp_y].neighbors[GameNode.UPRIGHT] = null;
-					}else{
-						tempNode.neighbors[GameNode.LOWLEFT] = gameboard[temp_x][temp_y];
-						gameboard[temp_x][temp_y].neighbors[GameNode.UPRIGHT] = tempNode;
-					}
-				}
-				break;
-			}
-			temp_x--;
-			temp_y--;
+	/*
+	 * Search the root to 'depth' plies.  With principal variation search
+	 * the window is first narrowed around 'guess', the expected score, and
+	 * opened up on one side if the score falls outside it.
+	 */
+	private BestStep aspirate(int depth, int guess) {
+		if (!pvs || guess == NO_SCORE || guess <= -100 || guess >= 100) {
+			return searchRoot(depth, -500, 500);
 		}
+		int alpha = guess - ASPIRATION;
+		int beta = guess + ASPIRATION;
+		BestStep result = searchRoot(depth, alpha, beta);
+		if (timeUp || (result.score > alpha && result.score < beta)) {
+			return result;
+		}
+		//open the window on the side the score fell out of
+		if (SearchStats.ENABLED) {
+			stats.researches++;
+		}
+		if (result.score <= alpha) {
+			return searchRoot(depth, -500, beta);
+		}
+		return searchRoot(depth, alpha, 500);
 	}
 
-	//Add a 'color'chip to the location (x, y) on the gameboard
-	private void addChip(int x, int y, int color) {
-		rounds++;
-		gameboard[x][y] = new GameNode(x, y, color);
-		upperLowerUpdate(x, y, color, GameNode.ADD);
-		leftRightUpdate(x, y, color, GameNode.ADD);
-		lRightuLeftUpdate(x, y, color, GameNode.ADD);
-		uRightlLeftUpdate(x, y, color, GameNode.ADD);
-		
-				
-	}
+	/*
+	 * Search the current position to 'depth' plies within the window
+	 * (alpha, beta), on this thread or, with more than one thread, split
+	 * among the helpers.
+	 */
+	private BestStep searchRoot(int depth, int alpha, int beta) {
+		rootDepth = depth;
+		if (threads == 1) {
+			return bestMove(whichSide, alpha, beta, depth);
+		}
+		BestStep myBest = steps[0];
+		myBest.move = 0;
+		myBest.depth = 0;
+		nodes++;
+		int scoreEval = searchEvaluate();
+		if (scoreEval == 100 || scoreEval == -100) {
+			myBest.score = scoreEval;
+			myBest.depth = depth;
+			return myBest;
+		}
+		int hashMove = 0;
+		if (table != null) {
+			hashMove = tableMove(whichSide);
+		}
+		int[] moves = moveLists[0];
+		int count = searchMoves(whichSide, moves, hashMove, 0);
+		if (count == 0) {
+			myBest.score = alpha;
+			return myBest;
+		}
 
-	//Remove a 'color'chip to the location(x, y) from the gameboard
-	private void removeChip(int x, int y, int color) {
-		rounds--;
-		upperLowerUpdate(x, y, color, GameNode.DELETE);
-		leftRightUpdate(x, y, color, GameNode.DELETE);
-		lRightuLeftUpdate(x, y, color, GameNode.DELETE);
-		uRightlLeftUpdate(x, y, color, GameNode.DELETE);
-		gameboard[x][y] = new GameNode(); //become empty after removal
-		
-		
+		//the first move gets the whole window on this thread, to give the others a bound
+		make(moves[0], whichSide);
+		BestStep reply = bestMove(1 - whichSide, alpha, beta, depth - 1);
+		undo(moves[0], whichSide);
+		if (timeUp) {
+			return myBest;
+		}
+		myBest.move = moves[0];
+		myBest.score = reply.score;
+		myBest.depth = reply.depth;
+		if (count > 1 && myBest.score < 100 && myBest.score < beta) {
+			splitRoot(moves, count, depth, Math.max(alpha, myBest.score), beta, myBest);
+		}
+		if (myBest.move != 0 && table != null) {
+			int s = symmetry(whichSide);
+			int bound = myBest.score <= alpha ? TranspositionTable.UPPER
+					: myBest.score >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			store(gameboard.key(whichSide, s), s, myBest, depth, bound);
+		}
+		return myBest;
 	}
 
-	// Returns a new move by "this" player.  Internally records the move (updates
-	// the internal game board) as a move by "this" player.
-	@Override
-	public Move chooseMove() {
-		Move m;
-		if(rounds < 2) {
-			if(whichSide == WHITE){
-				m = new Move(0,3);
-				forceMove(m);
-				return m;
-			} else {
-				m = new Move(3, 0);
-				forceMove(m);
-				return m;
+	/*
+	 * Share root moves 1 .. count-1 among the helpers.  Each helper has its own
+	 * copy of the board and takes the next unsearched move until none are
+	 * left; the best root score so far, starting at 'alpha', is shared so
+	 * that every helper searches with the tightest window known.  myBest is
+	 * updated in place.
+	 */
+	private void splitRoot(final int[] moves, final int count, final int depth, int alpha, final int beta,
+			final BestStep myBest) {
+		if (pool == null) {
+			pool = new ForkJoinPool(threads);
+		}
+		if (helpers.length != threads) {
+			helpers = new MachinePlayer[threads];
+			for (int i = 0; i < threads; i++) {
+				helpers[i] = new MachinePlayer(this);
 			}
 		}
-		BestStep best = bestMove(whichSide, -500, 500, sDepth);
-		m = best.m;
-		forceMove(m);
-		return m;
-	} 
+		final AtomicInteger next = new AtomicInteger(1);
+		final AtomicInteger bound = new AtomicInteger(alpha);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < threads; i++) {
+			final MachinePlayer helper = helpers[i];
+			helper.gameboard.copyFrom(gameboard);
+			helper.rounds = rounds;
+			helper.table = table;
+			helper.timeLimit = timeLimit;
+			helper.deadline = deadline;
+			helper.timeUp = false;
+			helper.rootDepth = depth;
+			helper.nodes = 0;
+			helper.stats.clear();
+			helper.sharedAlpha = bound;
+			helper.searchLike(this);
+			helper.reserve(steps.length - 1);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					int k;
+					while (!helper.timeUp && (k = next.getAndIncrement()) < count) {
+						helper.make(moves[k], whichSide);
+						BestStep reply = helper.pvs
+								? helper.probe(whichSide, bound.get(), beta, depth)
+								: helper.bestMove(1 - whichSide, bound.get(), beta, depth - 1);
+						helper.undo(moves[k], whichSide);
+						if (helper.timeUp) {
+							break;
+						}
+						synchronized (myBest) {
+							if (reply.score > myBest.score || (reply.score == myBest.score && reply.depth > myBest.depth)) {
+								myBest.move = moves[k];
+								myBest.score = reply.score;
+								myBest.depth = reply.depth;
+								bound.set(reply.score);
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		pool.invokeAll(tasks);
+		for (int i = 0; i < threads; i++) {
+			nodes += helpers[i].nodes;
+			stats.add(helpers[i].stats);
+			timeUp |= helpers[i].timeUp;
+			helpers[i].sharedAlpha = null;
+		}
+	}
 
 	// If the Move m is legal, records the move as a move by the opponent
 	// (updates the internal game board) and returns true.  If the move is
@@ -707,10 +1347,12 @@ public class MachinePlayer extends Player {
 	// player.  This method allows your opponents to inform you of their moves.
 	@Override
 	public boolean opponentMove(Move m) {
-		if(whichSide == BLACK){
-			return (enforceMove(m, WHITE));
+		boolean legal = enforceMove(m, 1 - whichSide);
+		if (ponder != null) {
+			//an illegal move is never the predicted one
+			ponder.opponentMoved(legal ? Board.pack(m) : 0);
 		}
-		return (enforceMove(m, BLACK));
+		return legal;
 	}
 
 	// If the Move m is legal, records the move as a move by "this" player
@@ -720,6 +1362,9 @@ public class MachinePlayer extends Player {
 	// player to solve.
 	@Override
 	public boolean forceMove(Move m) {
+		if (ponder != null) {
+			ponder.cancel(); //the position no longer follows the game pondered on
+		}
 		return (enforceMove(m, whichSide));
 	}
 
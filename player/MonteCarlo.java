@@ -0,0 +1,373 @@
+/* MonteCarlo.java */
+
+package player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Monte Carlo tree search (UCT), MachinePlayer's MONTE_CARLO engine.
+ *
+ *  Every playout walks down the tree from the root, picking at each node
+ *  the child with the best upper confidence bound, until it reaches a
+ *  node it has not been through before.  From there it plays random legal
+ *  moves until a network forms or PLAYOUT_PLIES moves have been played;
+ *  then the side with more connections and paths counts as the winner.
+ *  The result is added to every node on the way down.
+ *
+ *  A node's moves are generated the second time a playout goes through it
+ *  and its children are created one at a time, so a step-phase node with
+ *  hundreds of moves costs one array until they are tried.
+ *
+ *  With more than one thread the workers share one tree (tree
+ *  parallelism).  A worker going through a node counts a visit at once and
+ *  only adds the result when its playout is done, a "virtual loss" that
+ *  steers the other workers to other branches meanwhile.  The statistics
+ *  of a child are only changed with its parent locked.
+ */
+class MonteCarlo {
+	final static double EXPLORATION = 0.7; //weight of the confidence term of UCT
+	final static int PLAYOUT_PLIES = 15; //random moves a playout plays at most
+	final static int MAX_NODES = 1 << 20; //no node is added to a tree this big
+	final static int UNKNOWN = -2; //no winner yet
+	final static int DRAW = -1;
+	final static int STEP_TRIES = 16; //random steps tried before listing them all
+
+	/*
+	 * A position in the tree, reached by 'move' of 'mover'
+	 */
+	static class Node {
+		final int move; //packed; 0 for the root
+		final int mover;
+		int visits; //playouts through here, finished or not
+		double wins; //for the mover: 1 per win, 1/2 per draw
+		int winner = UNKNOWN; //set when 'move' ended the game
+		int[] moves; //the legal replies, shuffled; null until generated
+		Node[] children;
+		int tried; //children created so far, for moves[0 .. tried-1]
+
+		Node(int move, int mover) {
+			this.move = move;
+			this.mover = mover;
+		}
+	}
+
+	/*
+	 * The state one thread plays its playouts with
+	 */
+	private class Worker implements Callable<Object> {
+		Board board = new Board();
+		MoveGenerator generator = new MoveGenerator();
+		int[] moves = new int[MachinePlayer.MAX_MOVES];
+		Node[] path = new Node[0];
+		Random random;
+		int playouts;
+		int maxDepth;
+
+		Worker(long seed) {
+			random = new Random(seed);
+		}
+
+		public Object call() {
+			playouts = 0;
+			maxDepth = 0;
+			while (budget.getAndIncrement() < playoutLimit && System.nanoTime() - deadline < 0
+					&& !owner.aborted()) {
+				playout();
+				playouts++;
+			}
+			return null;
+		}
+
+		//One walk down the tree, a random game from its end and the update
+		private void playout() {
+			board.copyFrom(rootBoard);
+			int chips = rootChips;
+			int color = rootColor;
+			Node node = root;
+			synchronized (root) {
+				root.visits++;
+			}
+			int depth = 0;
+			int winner = UNKNOWN;
+			while (true) {
+				if (node.winner != UNKNOWN) {
+					winner = node.winner;
+					break;
+				}
+				boolean fresh = node.visits <= 1 && node != root;
+				if (fresh) {
+					break;
+				}
+				Node child = select(node, color, chips);
+				if (child == null) {
+					//no legal move: the side to move is stuck and loses
+					winner = 1 - color;
+					break;
+				}
+				chips += play(child.move, color);
+				if (depth + 1 >= path.length) {
+					path = java.util.Arrays.copyOf(path, 2 * depth + 8);
+				}
+				path[++depth] = child;
+				node = child;
+				color = 1 - color;
+			}
+			if (depth > maxDepth) {
+				maxDepth = depth;
+			}
+			if (winner == UNKNOWN) {
+				winner = randomGame(color, chips);
+			}
+			path[0] = root;
+			for (int i = 1; i <= depth; i++) {
+				Node n = path[i];
+				synchronized (path[i - 1]) {
+					n.wins += winner == n.mover ? 1 : winner == DRAW ? 0.5 : 0;
+				}
+			}
+		}
+
+		/*
+		 * Pick the child of 'node' (with 'color' to move) to go through next
+		 * and count the visit.  Untried moves come first, in the shuffled
+		 * order; then the child with the best upper confidence bound.  Return
+		 * null if 'color' has no legal move.
+		 */
+		private Node select(Node node, int color, int chips) {
+			synchronized (node) {
+				if (node.moves == null) {
+					int count = legal(color, chips, moves);
+					int[] list = java.util.Arrays.copyOf(moves, count);
+					for (int i = count - 1; i > 0; i--) {
+						int j = random.nextInt(i + 1);
+						int t = list[i];
+						list[i] = list[j];
+						list[j] = t;
+					}
+					node.moves = list;
+					node.children = new Node[count];
+				}
+				if (node.moves.length == 0) {
+					return null;
+				}
+				Node best = null;
+				if (node.tried < node.moves.length && (node.tried == 0 || nodes.get() < MAX_NODES)) {
+					best = new Node(node.moves[node.tried], color);
+					node.children[node.tried++] = best;
+					nodes.incrementAndGet();
+				} else {
+					double logVisits = Math.log(node.visits);
+					double bestValue = Double.NEGATIVE_INFINITY;
+					for (int i = 0; i < node.tried; i++) {
+						Node c = node.children[i];
+						double value = c.wins / c.visits + EXPLORATION * Math.sqrt(logVisits / c.visits);
+						if (value > bestValue) {
+							bestValue = value;
+							best = c;
+						}
+					}
+				}
+				best.visits++;
+				if (best.visits == 1) {
+					best.winner = settle(best.move, color);
+				}
+				return best;
+			}
+		}
+
+		/*
+		 * Return the winner if 'color' playing the packed move m ends the
+		 * game, else UNKNOWN; the board is left as it was
+		 */
+		private int settle(int m, int color) {
+			board.make(m, color);
+			int winner = winnerAfter(color);
+			board.unmake();
+			return winner;
+		}
+
+		//The winner after a move of 'mover', or UNKNOWN; both networks lose
+		private int winnerAfter(int mover) {
+			if (board.paths(1 - mover) == NetworkFinder.WIN) {
+				return 1 - mover;
+			}
+			if (board.paths(mover) == NetworkFinder.WIN) {
+				return mover;
+			}
+			return UNKNOWN;
+		}
+
+		/*
+		 * Play the packed move m for 'color' outside the journal.  Return the
+		 * change in the number of chips.
+		 */
+		private int play(int m, int color) {
+			GameRecord.play(board, m, color);
+			return (m >>> 12) == Move.ADD ? 1 : 0;
+		}
+
+		/*
+		 * Play random moves from the board, 'color' to move, and return the
+		 * winner
+		 */
+		private int randomGame(int color, int chips) {
+			for (int ply = 0; ply < PLAYOUT_PLIES; ply++) {
+				int m = randomMove(color, chips);
+				if (m == 0) {
+					return 1 - color;
+				}
+				chips += play(m, color);
+				int winner = winnerAfter(color);
+				if (winner != UNKNOWN) {
+					return winner;
+				}
+				color = 1 - color;
+			}
+			int black = board.edges[MachinePlayer.BLACK] + 4 * board.paths(MachinePlayer.BLACK);
+			int white = board.edges[MachinePlayer.WHITE] + 4 * board.paths(MachinePlayer.WHITE);
+			return black > white ? MachinePlayer.BLACK : white > black ? MachinePlayer.WHITE : DRAW;
+		}
+
+		/*
+		 * A legal move of 'color' picked at random, packed, or 0 if there is
+		 * none.  An add is picked straight from the mask of legal squares; a
+		 * step by trying random chips and squares, and only if that keeps
+		 * failing from the full list.
+		 */
+		private int randomMove(int color, int chips) {
+			if (chips < 20) {
+				long open = ~(board.occupied() | Board.FORBIDDEN[color] | board.blocked[color]);
+				if (open == 0) {
+					return 0;
+				}
+				return Move.ADD << 12 | nthBit(open, random.nextInt(Long.bitCount(open)));
+			}
+			long own = board.chips[color];
+			long free = ~(board.occupied() | Board.FORBIDDEN[color]);
+			int ownCount = Long.bitCount(own), freeCount = Long.bitCount(free);
+			for (int i = 0; i < STEP_TRIES; i++) {
+				int from = nthBit(own, random.nextInt(ownCount));
+				int to = nthBit(free, random.nextInt(freeCount));
+				if (board.canPlace(to, from, color)) {
+					return Move.STEP << 12 | from << 6 | to;
+				}
+			}
+			int count = generator.steps(board, color, moves);
+			return count == 0 ? 0 : moves[random.nextInt(count)];
+		}
+
+		private int legal(int color, int chips, int[] list) {
+			return chips < 20 ? generator.adds(board, color, list) : generator.steps(board, color, list);
+		}
+	}
+
+	//the square of bit n (counting from 0) of 'mask'
+	private static int nthBit(long mask, int n) {
+		for (int i = 0; i < n; i++) {
+			mask &= mask - 1;
+		}
+		return Long.numberOfTrailingZeros(mask);
+	}
+
+	private MachinePlayer owner;
+	private Worker[] workers;
+	private ForkJoinPool pool;
+	//the search in progress
+	private Node root;
+	private Board rootBoard = new Board();
+	private int rootChips;
+	private int rootColor;
+	private AtomicInteger budget = new AtomicInteger(); //playouts started
+	private AtomicInteger nodes = new AtomicInteger(); //nodes in the tree
+	private int playoutLimit;
+	private long deadline;
+
+	long playouts; //playouts of the last search
+	int depth; //deepest tree node the last search went through
+
+	/*
+	 * Creates a search for 'owner' (which it asks whether to abort) on
+	 * 'threads' threads
+	 */
+	MonteCarlo(MachinePlayer owner, int threads) {
+		this.owner = owner;
+		workers = new Worker[Math.max(1, threads)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(0x4D4354L + i);
+		}
+	}
+
+	/*
+	 * Search 'board' with 'rounds' chips and 'color' to move, for at most
+	 * 'playoutLimit' playouts and 'millis' milliseconds (0 for no limit on
+	 * either, but not both).  Return the move played most often, packed, or
+	 * 0 if there is no legal move.
+	 */
+	int search(Board board, int rounds, int color, int playoutLimit, long millis) {
+		rootBoard.copyFrom(board);
+		rootChips = rounds;
+		rootColor = color;
+		root = new Node(0, 1 - color);
+		budget.set(0);
+		nodes.set(1);
+		this.playoutLimit = playoutLimit > 0 ? playoutLimit : Integer.MAX_VALUE;
+		deadline = System.nanoTime() + (millis > 0 ? millis * 1000000L : Long.MAX_VALUE / 2);
+		if (workers.length == 1) {
+			workers[0].call();
+		} else {
+			if (pool == null) {
+				pool = new ForkJoinPool(workers.length);
+			}
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (Worker w : workers) {
+				tasks.add(w);
+			}
+			try {
+				for (java.util.concurrent.Future<Object> f : pool.invokeAll(tasks)) {
+					f.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		playouts = 0;
+		depth = 0;
+		for (Worker w : workers) {
+			playouts += w.playouts;
+			depth = Math.max(depth, w.maxDepth);
+		}
+		Node best = null;
+		for (int i = 0; i < root.tried; i++) {
+			Node c = root.children[i];
+			if (c.winner == color) {
+				return c.move; //a win on the spot
+			}
+			if (best == null || c.visits > best.visits || (c.visits == best.visits && c.wins > best.wins)) {
+				best = c;
+			}
+		}
+		if (best == null && root.moves == null) {
+			//not a single playout: fall back on any legal move
+			workers[0].board.copyFrom(rootBoard);
+			int count = workers[0].legal(color, rounds, workers[0].moves);
+			return count == 0 ? 0 : workers[0].moves[0];
+		}
+		return best == null ? 0 : best.move;
+	}
+
+	void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+}
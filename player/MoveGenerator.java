@@ -0,0 +1,59 @@
+/* MoveGenerator.java */
+
+package player;
+
+/**
+ *  Generates the legal moves of one side straight from the board's masks.
+ *
+ *  An add may go to any square that is empty, not in the opponent's goals
+ *  (Board.FORBIDDEN) and not blocked by the cluster rule (Board.blocked).
+ *  A step lifts one of the side's chips first, so for each chip the
+ *  cluster mask is rebuilt without it.  Moves come out packed by Board.pack,
+ *  in the same order as a scan of validMove over the board: new square
+ *  first, then old square, both in square order.
+ */
+public class MoveGenerator {
+	//targets[from] = the squares the chip on 'from' may step to
+	private long[] targets = new long[MachinePlayer.SIZE * MachinePlayer.SIZE];
+
+	/*
+	 * Fill 'moves' with every legal add of 'color'.  Return the number of moves.
+	 */
+	int adds(Board board, int color, int[] moves) {
+		int count = 0;
+		long open = ~(board.occupied() | Board.FORBIDDEN[color] | board.blocked[color]);
+		while (open != 0) {
+			moves[count++] = Move.ADD << 12 | Long.numberOfTrailingZeros(open);
+			open &= open - 1;
+		}
+		return count;
+	}
+
+	/*
+	 * Fill 'moves' with every legal step of 'color'.  Return the number of moves.
+	 */
+	int steps(Board board, int color, int[] moves) {
+		int count = 0;
+		long own = board.chips[color];
+		long free = ~(board.occupied() | Board.FORBIDDEN[color]);
+		long anywhere = 0;
+		//one pass over the chip list works out where each chip can go
+		for (long list = own; list != 0; list &= list - 1) {
+			int from = Long.numberOfTrailingZeros(list);
+			targets[from] = free & ~Board.cluster(own & ~Board.bit(from));
+			anywhere |= targets[from];
+		}
+		for (; anywhere != 0; anywhere &= anywhere - 1) {
+			int to = Long.numberOfTrailingZeros(anywhere);
+			long toBit = Board.bit(to);
+			for (long list = own; list != 0; list &= list - 1) {
+				int from = Long.numberOfTrailingZeros(list);
+				if ((targets[from] & toBit) != 0) {
+					moves[count++] = Move.STEP << 12 | from << 6 | to;
+				}
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,103 @@
+/* NetworkFinder.java */
+
+package player;
+
+/**
+ *  Finds networks: chains of at least six connected chips of one color that
+ *  run from one of its goal areas to the other, never passing straight
+ *  through a chip and never revisiting one.
+ *
+ *  The search works only on the masks it is given: the chips of one color and
+ *  their connections (Board.links).  The visited set of a path and the
+ *  squares it may not continue into are 64-bit masks carried down the
+ *  recursion, so nothing is allocated, nothing is shared and any number of
+ *  threads may call it at once.
+ */
+public class NetworkFinder {
+	//chips on these lines never continue a path; chips on END_LINES finish one
+	final static long START_LINES = Board.COLUMN_0 | Board.ROW_0;
+	final static long END_LINES = Board.COLUMN_7 | Board.ROW_7;
+	final static int WIN = 100;
+	private final static int FOUND = -1; //returned by paths() once a network is found
+
+	private NetworkFinder() {
+	}
+
+	/*
+	 * Return true if the chips 'own' of 'color', connected as given by 'links',
+	 * form a network
+	 */
+	public static boolean hasNetwork(long own, long[] links, int color) {
+		return calcWin(own, links, color) == WIN;
+	}
+
+	/*
+	 * Return 100 if the chips 'own' of 'color', connected as given by 'links',
+	 * form a network.  Otherwise return the most paths that start at any one
+	 * chip in the first goal area of 'color' and reach the second one.
+	 */
+	public static int calcWin(long own, long[] links, int color) {
+		long start = own & (color == MachinePlayer.WHITE ? Board.COLUMN_0 : Board.ROW_0);
+		if (start == 0 || (own & END_LINES) == 0) {
+			return 0;
+		}
+		int maxPath = 0;
+		for (; start != 0; start &= start - 1) {
+			int paths = paths(links, Long.numberOfTrailingZeros(start), 0, START_LINES, 1, END_LINES);
+			if (paths == FOUND) {
+				return WIN;
+			}
+			if (maxPath < paths) {
+				maxPath = paths;
+			}
+		}
+		return maxPath;
+	}
+
+	/*
+	 * Return the most paths that start at any one chip in the second goal
+	 * area of 'color' and reach the first, the same count as calcWin with
+	 * the goals swapped.  The larger of the two does not change when the
+	 * board is mirrored (see Symmetry).  Only for chips without a network.
+	 */
+	public static int calcBack(long own, long[] links, int color) {
+		long start = own & (color == MachinePlayer.WHITE ? Board.COLUMN_7 : Board.ROW_7);
+		if (start == 0 || (own & START_LINES) == 0) {
+			return 0;
+		}
+		int maxPath = 0;
+		for (; start != 0; start &= start - 1) {
+			int paths = paths(links, Long.numberOfTrailingZeros(start), 0, END_LINES, 1, START_LINES);
+			maxPath = Math.max(maxPath, paths == FOUND ? WIN : paths);
+		}
+		return maxPath;
+	}
+
+	/*
+	 * Depth first search from the chip on sq, the depth-th chip of the path so
+	 * far, towards the goal lines 'end'.  'visited' holds the earlier chips of
+	 * the path and the goal lines it started from, and 'straight' the squares
+	 * straight ahead in the direction sq was entered, which a path may not
+	 * continue into.
+	 * Return the number of paths that reach the goal lines, or FOUND
+	 * as soon as one of them is a network.
+	 */
+	private static int paths(long[] links, int sq, long straight, long visited, int depth, long end) {
+		if ((end & Board.bit(sq)) != 0) {
+			return depth >= 6 ? FOUND : 1;
+		}
+		visited |= Board.bit(sq);
+		int count = 0;
+		for (long next = links[sq] & ~(visited | straight); next != 0; next &= next - 1) {
+			int to = Long.numberOfTrailingZeros(next);
+			long ahead = Board.RAY[Board.DIRECTION[sq << 6 | to]][to];
+			int found = paths(links, to, ahead, visited, depth + 1, end);
+			if (found == FOUND) {
+				return FOUND;
+			}
+			count += found;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,77 @@
+/* Notation.java */
+
+package player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Reads moves written the way Move.toString() prints them:
+ *  "[add to 34]", "[step from 12 to 34]" and "[quit]", where each pair of
+ *  digits is x then y.  Used for position files and command line tools.
+ */
+public class Notation {
+
+	private Notation() {
+	}
+
+	/*
+	 * Return the move written as 's'.  Throws IllegalArgumentException if 's'
+	 * is not a move.
+	 */
+	public static Move parseMove(String s) {
+		String t = s.trim();
+		if (t.equals("[quit]")) {
+			return new Move();
+		}
+		if (t.startsWith("[add to ") && t.endsWith("]") && t.length() == 11) {
+			return new Move(digit(t, 8), digit(t, 9));
+		}
+		if (t.startsWith("[step from ") && t.endsWith("]") && t.length() == 20
+				&& t.startsWith(" to ", 13)) {
+			return new Move(digit(t, 17), digit(t, 18), digit(t, 11), digit(t, 12));
+		}
+		throw new IllegalArgumentException("not a move: " + s);
+	}
+
+	/*
+	 * Return the moves in 's', a sequence of bracketed moves separated by
+	 * anything outside the brackets (usually spaces).
+	 */
+	public static List<Move> parseMoves(String s) {
+		List<Move> moves = new ArrayList<Move>();
+		int i = s.indexOf('[');
+		while (i >= 0) {
+			int j = s.indexOf(']', i);
+			if (j < 0) {
+				throw new IllegalArgumentException("unclosed move: " + s.substring(i));
+			}
+			moves.add(parseMove(s.substring(i, j + 1)));
+			i = s.indexOf('[', j);
+		}
+		return moves;
+	}
+
+	/*
+	 * Return 'moves' written out, separated by spaces
+	 */
+	public static String format(List<Move> moves) {
+		StringBuilder b = new StringBuilder();
+		for (Move m : moves) {
+			if (b.length() > 0) {
+				b.append(' ');
+			}
+			b.append(m);
+		}
+		return b.toString();
+	}
+
+	private static int digit(String s, int i) {
+		int d = s.charAt(i) - '0';
+		if (d < 0 || d >= MachinePlayer.SIZE) {
+			throw new IllegalArgumentException("bad coordinate in " + s);
+		}
+		return d;
+	}
+
+}
@@ -0,0 +1,145 @@
+/* OpeningBook.java */
+
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  A book of precomputed moves for early positions, read straight from a
+ *  memory-mapped file.  BookBuilder writes the file.
+ *
+ *  File format (big-endian):
+ *    int   MAGIC
+ *    int   VERSION
+ *    int   number of entries
+ *    then for each entry, sorted by key:
+ *    long  Board.key() of the position's canonical image (see Symmetry),
+ *          with the side to move
+ *    int   the move to play in that image, packed by Board.pack
+ *
+ *  A position and its mirror images share one entry; version 1 books,
+ *  which had an entry for each, are refused.
+ *
+ *  Lookups are a binary search over the mapped entries; nothing is read
+ *  into the heap, and any number of players and threads may share a book.
+ */
+public class OpeningBook {
+	final static int MAGIC = 0x4E57424B; //"NWBK"
+	final static int VERSION = 2;
+	final static int HEADER = 12;
+	final static int ENTRY = 12;
+
+	private ByteBuffer entries;
+	private int count;
+
+	private OpeningBook(ByteBuffer entries, int count) {
+		this.entries = entries;
+		this.count = count;
+	}
+
+	/*
+	 * Map the book in file 'path'.  Throws IOException if it cannot be read
+	 * or is not a book.
+	 */
+	public static OpeningBook load(String path) throws IOException {
+		ByteBuffer map;
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (map.capacity() < HEADER || map.getInt(0) != MAGIC) {
+			throw new IOException(path + " is not an opening book");
+		}
+		if (map.getInt(4) != VERSION) {
+			throw new IOException(path + " is book version " + map.getInt(4) + ", expected " + VERSION);
+		}
+		int count = map.getInt(8);
+		if (count < 0 || map.capacity() != HEADER + (long) count * ENTRY) {
+			throw new IOException(path + " is truncated");
+		}
+		return new OpeningBook(map, count);
+	}
+
+	/*
+	 * Return the book named by the system property network.book, loaded the
+	 * first time it is asked for.  Return null if the property is not set or
+	 * the book cannot be loaded; propertyError() then says why.
+	 */
+	static OpeningBook fromProperty() {
+		return Property.BOOK;
+	}
+
+	/*
+	 * Return the error that kept the book named by network.book from
+	 * loading, or null if it loaded or the property is not set
+	 */
+	public static IOException propertyError() {
+		return Property.BOOK == null ? Property.error : null;
+	}
+
+	//holds the network.book book, so it is loaded once and only when used
+	private static class Property {
+		static IOException error;
+		final static OpeningBook BOOK = load();
+
+		private static OpeningBook load() {
+			String path = System.getProperty("network.book");
+			if (path == null) {
+				return null;
+			}
+			try {
+				return OpeningBook.load(path);
+			} catch (IOException e) {
+				error = e;
+				return null;
+			}
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/*
+	 * Return the packed book move for the canonical position with hash 'key',
+	 * or 0 if the position is not in the book
+	 */
+	int probe(long key) {
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long k = entries.getLong(HEADER + mid * ENTRY);
+			if (k < key) {
+				low = mid + 1;
+			} else if (k > key) {
+				high = mid - 1;
+			} else {
+				return entries.getInt(HEADER + mid * ENTRY + 8);
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Write a book to 'path'.  'keys' must be sorted and distinct, and
+	 * moves[i] is the move for keys[i].
+	 */
+	static void write(String path, long[] keys, int[] moves) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(keys.length);
+			for (int i = 0; i < keys.length; i++) {
+				out.writeLong(keys[i]);
+				out.writeInt(moves[i]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+/* Perft.java */
+
+package player;
+
+import java.util.List;
+
+/**
+ *  Counts the positions reachable in exactly N plies, using the same move
+ *  generation and make/undo as the search and no evaluation at all.  The
+ *  counts are a regression check on move generation, and nodes per second
+ *  says how much of a search's time goes to generating and playing moves.
+ *
+ *  Usage: java player.Perft [-divide] depth [moves]
+ *         java player.Perft -check
+ *
+ *  The start position is given as moves from the empty board, white first,
+ *  written as Move.toString() prints them, e.g.
+ *    java player.Perft 3 "[add to 03] [add to 30]"
+ *  Every depth from 1 to 'depth' is counted.  A count that passes 20 chips
+ *  goes from adds to steps, as the game does.  A network does not end the
+ *  count, since finding one is evaluation.  -divide also prints the count
+ *  below each first move.
+ *
+ *  -check counts the reference positions in REFERENCE instead, and exits
+ *  with status 1 if any count differs from the recorded one.
+ */
+public class Perft {
+	private MachinePlayer player;
+	private int side; //the side to move
+	private int[][] moveLists = new int[0][]; //legal moves, one list per ply
+
+	/*
+	 * Reference positions for -check: a name, the moves leading to it, and the
+	 * count at each depth from 1.  midgame-4 crosses from adds into steps at
+	 * depth 5; step-1 starts in the step phase.  The positions are the ones
+	 * of the same name in the benchmark suite.
+	 */
+	final static Object[][] REFERENCE = {
+		{ "start", "",
+			new long[] { 48, 2268, 104904 } },
+		{ "midgame-4", "[add to 43] [add to 63] [add to 02] [add to 23] [add to 51] [add to 67] [add to 34] "
+				+ "[add to 54] [add to 41] [add to 27] [add to 36] [add to 35] [add to 13] [add to 25] "
+				+ "[add to 56] [add to 42]",
+			new long[] { 16, 270, 3620, 51268, 7154992 } },
+		{ "step-1", "[add to 26] [add to 56] [add to 01] [add to 55] [add to 06] [add to 11] [add to 22] "
+				+ "[add to 50] [add to 54] [add to 23] [add to 76] [add to 16] [add to 35] [add to 34] "
+				+ "[add to 51] [add to 15] [add to 13] [add to 20] [add to 41] [add to 53] "
+				+ "[step from 13 to 05] [step from 11 to 30] [step from 01 to 33] [step from 30 to 42]",
+			new long[] { 138, 16118, 2359890 } },
+	};
+
+	/*
+	 * Set up the position reached by 'moves', which must all be legal
+	 */
+	Perft(List<Move> moves) {
+		side = sideToMove(moves);
+		player = new MachinePlayer(side);
+		int color = MachinePlayer.WHITE;
+		for (Move m : moves) {
+			boolean legal = color == side ? player.forceMove(m) : player.opponentMove(m);
+			if (!legal) {
+				throw new IllegalArgumentException("illegal move " + m);
+			}
+			color = 1 - color;
+		}
+	}
+
+	static int sideToMove(List<Move> moves) {
+		return moves.size() % 2 == 0 ? MachinePlayer.WHITE : MachinePlayer.BLACK;
+	}
+
+	/*
+	 * Return the number of move sequences of 'depth' plies from this position
+	 */
+	long count(int depth) {
+		reserve(depth);
+		return count(side, depth, 0);
+	}
+
+	private long count(int color, int depth, int ply) {
+		if (depth == 0) {
+			return 1;
+		}
+		int[] moves = moveLists[ply];
+		int n = player.legalMoves(color, moves);
+		long total = 0;
+		for (int k = 0; k < n; k++) {
+			player.make(moves[k], color);
+			total += count(1 - color, depth - 1, ply + 1);
+			player.undo(moves[k], color);
+		}
+		return total;
+	}
+
+	/*
+	 * Print the count below each legal first move, then the total
+	 */
+	void divide(int depth) {
+		reserve(depth);
+		int[] moves = moveLists[0];
+		int n = player.legalMoves(side, moves);
+		long total = 0;
+		for (int k = 0; k < n; k++) {
+			player.make(moves[k], side);
+			long nodes = count(1 - side, depth - 1, 1);
+			player.undo(moves[k], side);
+			System.out.println(Board.unpack(moves[k]) + " " + nodes);
+			total += nodes;
+		}
+		System.out.println("total " + total);
+	}
+
+	int chips() {
+		return Long.bitCount(player.gameboard.occupied());
+	}
+
+	/*
+	 * Count every REFERENCE position, print each count that differs from the
+	 * recorded one, and return the number that differ
+	 */
+	static int check() {
+		int failures = 0;
+		for (Object[] ref : REFERENCE) {
+			String name = (String) ref[0];
+			long[] expected = (long[]) ref[2];
+			Perft perft = new Perft(Notation.parseMoves((String) ref[1]));
+			for (int d = 1; d <= expected.length; d++) {
+				long nodes = perft.count(d);
+				if (nodes != expected[d - 1]) {
+					System.out.println(name + " depth " + d + ": " + nodes + " nodes, expected " + expected[d - 1]);
+					failures++;
+				}
+			}
+			System.out.println(name + " checked to depth " + expected.length);
+		}
+		return failures;
+	}
+
+	private void reserve(int depth) {
+		if (moveLists.length < depth) {
+			moveLists = new int[depth][MachinePlayer.MAX_MOVES];
+		}
+	}
+
+	public static void main(String[] args) {
+		int i = 0;
+		boolean divide = false;
+		if (args.length == 1 && args[0].equals("-check")) {
+			int failures = check();
+			System.out.println(failures == 0 ? "all counts match" : failures + " counts differ");
+			System.exit(failures == 0 ? 0 : 1);
+		}
+		if (i < args.length && args[i].equals("-divide")) {
+			divide = true;
+			i++;
+		}
+		if (i >= args.length) {
+			System.err.println("usage: java player.Perft [-divide] depth [moves] | -check");
+			System.exit(2);
+		}
+		int depth = Integer.parseInt(args[i++]);
+		if (depth < 1) {
+			System.err.println("depth must be at least 1");
+			System.exit(2);
+		}
+		StringBuilder text = new StringBuilder();
+		for (; i < args.length; i++) {
+			text.append(args[i]).append(' ');
+		}
+		List<Move> moves = Notation.parseMoves(text.toString());
+		Perft perft = new Perft(moves);
+		System.out.println(perft.chips() + " chips on the board, "
+				+ (perft.side == MachinePlayer.WHITE ? "white" : "black") + " to move");
+		if (divide) {
+			perft.divide(depth);
+			return;
+		}
+		for (int d = 1; d <= depth; d++) {
+			long start = System.nanoTime();
+			long nodes = perft.count(d);
+			long nanos = Math.max(1, System.nanoTime() - start);
+			System.out.printf("depth %d: %d nodes, %.1f ms, %.0f nodes/s%n", d, nodes, nanos / 1e6,
+					nodes * 1e9 / nanos);
+		}
+	}
+
+}
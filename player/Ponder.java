@@ -0,0 +1,153 @@
+/* Ponder.java */
+
+package player;
+
+/**
+ *  Searches on the opponent's time.  After a MachinePlayer has moved, a
+ *  background thread takes the opponent's reply its search expected (or
+ *  guesses one with a shallower search if the transposition table has lost
+ *  it), plays it on a private copy of the board and searches the position
+ *  after it.  If the opponent then plays the guessed move, the search so far is
+ *  used for the next chooseMove; otherwise it is stopped and thrown away.
+ *
+ *  The background thread never touches the owner's gameboard: both of its
+ *  engines are separate MachinePlayers set up from a copy.
+ */
+class Ponder implements Runnable {
+	final static long NO_LIMIT = 24L * 3600 * 1000; //a time limit no search reaches
+
+	private MachinePlayer opponent; //guesses the reply
+	private MachinePlayer self; //searches our answer to it
+	private Thread thread; //null when nothing is being pondered
+	private boolean hit; //the opponent played the predicted reply
+	private volatile boolean cancelled;
+	private volatile int predicted; //the guessed reply, packed; 0 until it is known
+	private volatile int result; //our answer, packed; 0 until the search is done
+	private int guess; //the reply the owner's search expected, 0 if unknown
+
+	/*
+	 * Start pondering on the position 'owner' is in, with the opponent to
+	 * move.  'guess' is the expected reply, packed, or 0 to search for one.
+	 */
+	void start(MachinePlayer owner, int color, int depth, int rounds, int guess) {
+		if (self == null) {
+			opponent = new MachinePlayer(1 - color, Math.max(1, depth - 1), NO_LIMIT);
+			self = new MachinePlayer(color, depth, NO_LIMIT);
+			for (MachinePlayer p : new MachinePlayer[] { opponent, self }) {
+				p.setOpeningBook(null);
+				p.setSolver(0, 0);
+			}
+		}
+		opponent.searchLike(owner);
+		self.searchLike(owner);
+		opponent.setUp(owner.gameboard, rounds);
+		self.setUp(owner.gameboard, rounds);
+		cancelled = false;
+		hit = false;
+		predicted = 0;
+		result = 0;
+		this.guess = guess;
+		thread = new Thread(this, "ponder");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void run() {
+		int reply = guess;
+		//a hash collision could name an illegal move, which opponentMove refuses
+		if (reply == 0 || !self.opponentMove(Board.unpack(reply))) {
+			reply = opponent.search();
+			if (cancelled || reply == 0) {
+				return;
+			}
+			self.opponentMove(Board.unpack(reply));
+		}
+		predicted = reply;
+		result = self.search();
+	}
+
+	/*
+	 * The opponent played the packed move: keep pondering if it was the
+	 * predicted reply, otherwise stop.  A prediction still being worked out
+	 * counts as a miss.
+	 */
+	void opponentMoved(int move) {
+		if (thread == null) {
+			return;
+		}
+		if (predicted != 0 && predicted == move) {
+			hit = true;
+		} else {
+			cancel();
+		}
+	}
+
+	/*
+	 * Stop the background search, if any, and wait for the thread to end
+	 */
+	void cancel() {
+		if (thread == null) {
+			return;
+		}
+		cancelled = true;
+		opponent.abort();
+		self.abort();
+		join(0);
+		thread = null;
+	}
+
+	/*
+	 * Return our pondered answer, packed, or 0 if there is none to use.  After
+	 * a hit the search gets up to 'millis' more milliseconds (0 lets it
+	 * finish) and is then stopped.  Either way pondering is over.
+	 */
+	int finish(long millis) {
+		if (thread == null) {
+			return 0;
+		}
+		if (!hit) {
+			cancel();
+			return 0;
+		}
+		if (millis <= 0) {
+			join(0);
+		} else {
+			join(millis);
+			if (thread.isAlive()) {
+				self.abort();
+				join(0);
+			}
+		}
+		thread = null;
+		return result;
+	}
+
+	//The statistics of the pondered search
+	SearchStats stats() {
+		return self.getStats();
+	}
+
+	/*
+	 * Wait up to 'millis' milliseconds for the thread, or until it ends if
+	 * 'millis' is 0.  An interrupt ends a timed wait early but not an untimed
+	 * one, so that after join(0) the thread is gone; the interrupt is kept.
+	 */
+	private void join(long millis) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				thread.join(millis);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+				if (millis > 0) {
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/* Position.java */
+
+package player;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ *  A position in BYTES bytes, for game records and other files.
+ *
+ *  Encoding (big-endian):
+ *    long  the black chips, bit x * 8 + y for square (x, y), as in Board
+ *    long  the white chips
+ *    short round << 1 | side to move, where round is the number of moves
+ *          played since the empty board
+ *
+ *  Positions are immutable and compare equal when their encodings do.
+ */
+public final class Position {
+	final static int BYTES = 18;
+	final static int MAX_ROUND = (1 << 15) - 1;
+
+	final long black;
+	final long white;
+	final int side; //BLACK or WHITE, whichever moves next
+	final int round;
+
+	/*
+	 * Creates a position.  Throws IllegalArgumentException if the masks
+	 * overlap or 'side' or 'round' is out of range.
+	 */
+	public Position(long black, long white, int side, int round) {
+		if ((black & white) != 0) {
+			throw new IllegalArgumentException("a square holds both colors");
+		}
+		if (side != MachinePlayer.BLACK && side != MachinePlayer.WHITE) {
+			throw new IllegalArgumentException("bad side " + side);
+		}
+		if (round < 0 || round > MAX_ROUND) {
+			throw new IllegalArgumentException("bad round " + round);
+		}
+		this.black = black;
+		this.white = white;
+		this.side = side;
+		this.round = round;
+	}
+
+	/*
+	 * The empty board, white to move
+	 */
+	public static Position start() {
+		return new Position(0, 0, MachinePlayer.WHITE, 0);
+	}
+
+	/*
+	 * The chips of 'board' with 'side' to move after 'round' moves
+	 */
+	static Position of(Board board, int side, int round) {
+		return new Position(board.chips[MachinePlayer.BLACK], board.chips[MachinePlayer.WHITE], side, round);
+	}
+
+	/*
+	 * Return a new Board holding the chips of this position
+	 */
+	Board toBoard() {
+		Board board = new Board();
+		board.set(black, white);
+		return board;
+	}
+
+	/*
+	 * Return the number of 'color' chips
+	 */
+	public int chips(int color) {
+		return Long.bitCount(color == MachinePlayer.WHITE ? white : black);
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(black);
+		out.writeLong(white);
+		out.writeShort(round << 1 | side);
+	}
+
+	public static Position read(DataInput in) throws IOException {
+		long black = in.readLong();
+		long white = in.readLong();
+		return decode(black, white, in.readUnsignedShort());
+	}
+
+	void put(ByteBuffer buffer) {
+		buffer.putLong(black);
+		buffer.putLong(white);
+		buffer.putShort((short) (round << 1 | side));
+	}
+
+	static Position get(ByteBuffer buffer) throws IOException {
+		long black = buffer.getLong();
+		long white = buffer.getLong();
+		return decode(black, white, buffer.getShort() & 0xFFFF);
+	}
+
+	private static Position decode(long black, long white, int turn) throws IOException {
+		if ((black & white) != 0) {
+			throw new IOException("bad position: a square holds both colors");
+		}
+		return new Position(black, white, turn & 1, turn >>> 1);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Position)) {
+			return false;
+		}
+		Position p = (Position) o;
+		return black == p.black && white == p.white && side == p.side && round == p.round;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(black * 31 + white) * 31 + (round << 1 | side);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[black %016x white %016x, %s to move, round %d]", black, white,
+				side == MachinePlayer.WHITE ? "white" : "black", round);
+	}
+
+}
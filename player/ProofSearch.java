@@ -0,0 +1,215 @@
+/* ProofSearch.java */
+
+package player;
+
+import java.util.Random;
+
+/**
+ *  A depth-first proof-number (df-pn) solver for the question "can
+ *  'attacker' form a network within N of its own moves, whatever the
+ *  defender does?".
+ *
+ *  Every node carries a proof number (how many leaves still have to be
+ *  proven for the attacker to win) and a disproof number (the same for the
+ *  defender).  They are stored as (phi, delta) from the side to move: phi
+ *  is the number for the side to move to win, delta for it to lose.  The
+ *  search always descends into the child with the smallest delta, which is
+ *  the cheapest way to settle the node, and backs up once the numbers pass
+ *  the thresholds handed down from the parent.
+ *
+ *  Numbers are kept in a fixed-size table keyed by the position, the side
+ *  to move and the attacker's moves left, so memory is bounded; an entry
+ *  lost to a collision only costs work.  A node budget bounds the time.
+ *  A move completing networks for both sides loses, as in the rules.
+ */
+public class ProofSearch {
+	final static int INF = 1 << 28;
+
+	//REMAINING[r] is mixed into the key of a node with r attacker moves left
+	private final static long[] REMAINING = new long[64];
+
+	static {
+		Random random = new Random(0x70726F6F66L);
+		for (int i = 0; i < REMAINING.length; i++) {
+			REMAINING[i] = random.nextLong();
+		}
+	}
+
+	private Board board;
+	private int attacker;
+	private MoveGenerator generator = new MoveGenerator();
+	private long budget; //positions the current proof may still look at
+	//per ply: the legal moves and the (phi, delta) of the positions after them
+	private int[][] moves = new int[0][];
+	private int[][] childPhi = new int[0][];
+	private int[][] childDelta = new int[0][];
+	private int lastPhi, lastDelta; //the numbers of the node mid() just left
+	private int rootCount; //legal moves at the root
+
+	private long[] keys;
+	private int[] phis;
+	private int[] deltas;
+	private int mask;
+	private boolean symmetric; //key nodes by their canonical image
+
+	long nodes; //positions looked at by the last prove()
+
+	/*
+	 * Creates a solver whose table holds 'entries' nodes, rounded down to a
+	 * power of two
+	 */
+	public ProofSearch(int entries) {
+		int size = 1;
+		while (size * 2 <= entries) {
+			size *= 2;
+		}
+		keys = new long[size];
+		phis = new int[size];
+		deltas = new int[size];
+		mask = size - 1;
+	}
+
+	/*
+	 * Turns symmetric keys on or off.  A position and its mirror images
+	 * (see Symmetry) have the same proof and disproof numbers, so with them
+	 * on they share one entry.
+	 */
+	public void setSymmetry(boolean on) {
+		symmetric = on;
+	}
+
+	//The table key of the node with 'color' to move and 'left' attacker moves left
+	private long key(int color, int left) {
+		int s = symmetric ? board.canonical(color) : Symmetry.IDENTITY;
+		return board.key(color, s) ^ REMAINING[left];
+	}
+
+	/*
+	 * Try to prove that 'attacker', to move on 'board', forms a network within
+	 * 'moves' of its own moves.  Give up after looking at 'nodeBudget'
+	 * positions.  Return the first move of the win, packed by Board.pack, or
+	 * 0 if there is none or the budget ran out.  The board is left as it was.
+	 */
+	public int prove(Board board, int attacker, int moves, long nodeBudget) {
+		this.board = board;
+		this.attacker = attacker;
+		budget = nodeBudget;
+		nodes = 0;
+		java.util.Arrays.fill(keys, 0);
+		reserve(2 * moves);
+		mid(attacker, moves, INF, INF, 0);
+		if (lastPhi != 0) {
+			return 0;
+		}
+		//proven: some move leaves the defender lost
+		for (int k = 0; k < rootCount; k++) {
+			if (childDelta[0][k] == 0) {
+				return this.moves[0][k];
+			}
+		}
+		return 0;
+	}
+
+	private void reserve(int plies) {
+		if (moves.length >= plies) {
+			return;
+		}
+		moves = new int[plies][MachinePlayer.MAX_MOVES];
+		childPhi = new int[plies][MachinePlayer.MAX_MOVES];
+		childDelta = new int[plies][MachinePlayer.MAX_MOVES];
+	}
+
+	/*
+	 * Search the node with 'color' to move and 'left' attacker moves left
+	 * until its phi reaches thPhi or its delta reaches thDelta (or the
+	 * budget runs out).  The result is left in lastPhi and lastDelta.
+	 */
+	private void mid(int color, int left, int thPhi, int thDelta, int ply) {
+		long key = key(color, left);
+		int[] list = moves[ply];
+		int[] phi = childPhi[ply];
+		int[] delta = childDelta[ply];
+		int count = Long.bitCount(board.occupied()) < 20
+				? generator.adds(board, color, list)
+				: generator.steps(board, color, list);
+		if (ply == 0) {
+			rootCount = count;
+		}
+		int childLeft = color == attacker ? left - 1 : left;
+		for (int k = 0; k < count; k++) {
+			child(list[k], color, childLeft);
+			phi[k] = lastPhi;
+			delta[k] = lastDelta;
+		}
+		int myPhi, myDelta;
+		while (true) {
+			//to win, one child must lose; to lose, every child must win.
+			//With no move at all the side to move is stuck, which loses.
+			myPhi = INF;
+			myDelta = 0;
+			int best = -1, delta2 = INF;
+			for (int k = 0; k < count; k++) {
+				if (delta[k] < myPhi) {
+					delta2 = myPhi;
+					myPhi = delta[k];
+					best = k;
+				} else if (delta[k] < delta2) {
+					delta2 = delta[k];
+				}
+				myDelta = Math.min(INF, myDelta + phi[k]);
+			}
+			if (myPhi >= thPhi || myDelta >= thDelta || budget <= 0) {
+				break;
+			}
+			board.make(list[best], color);
+			mid(1 - color, childLeft, thDelta + phi[best] - myDelta, Math.min(thPhi, delta2 + 1), ply + 1);
+			board.unmake();
+			phi[best] = lastPhi;
+			delta[best] = lastDelta;
+		}
+		store(key, myPhi, myDelta);
+		lastPhi = myPhi;
+		lastDelta = myDelta;
+	}
+
+	/*
+	 * Work out the starting numbers of the position after 'color' plays m,
+	 * from the other side's point of view, into lastPhi and lastDelta
+	 */
+	private void child(int m, int color, int childLeft) {
+		budget--;
+		nodes++;
+		board.make(m, color);
+		if (board.paths(1 - color) == NetworkFinder.WIN) {
+			//the side to move there has a network: it won
+			lastPhi = 0;
+			lastDelta = INF;
+		} else if (board.paths(color) == NetworkFinder.WIN) {
+			lastPhi = INF;
+			lastDelta = 0;
+		} else if (childLeft == 0) {
+			//that was the attacker's last move: the defender has held
+			lastPhi = 0;
+			lastDelta = INF;
+		} else {
+			long key = key(1 - color, childLeft);
+			int i = (int) key & mask;
+			if (keys[i] == key) {
+				lastPhi = phis[i];
+				lastDelta = deltas[i];
+			} else {
+				lastPhi = 1;
+				lastDelta = 1;
+			}
+		}
+		board.unmake();
+	}
+
+	private void store(long key, int phi, int delta) {
+		int i = (int) key & mask;
+		keys[i] = key;
+		phis[i] = phi;
+		deltas[i] = delta;
+	}
+
+}
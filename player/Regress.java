@@ -0,0 +1,161 @@
+/* Regress.java */
+
+package player;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Compares the moves this engine chooses with the moves the original
+ *  engine, the GameNode one whose classes are still in bin/, chooses on
+ *  the positions of a corpus file.  The original classes have the same
+ *  names as these, so they are loaded through a class loader of their own
+ *  and driven by reflection.
+ *
+ *  Usage: java player.Regress [-depth N] [-bin DIR] [-expect N] [corpus]
+ *    -depth N    search depth of both engines (default 3)
+ *    -bin DIR    directory holding the original classes (default bin)
+ *    -expect N   mismatches the run should find (default EXPECTED)
+ *    corpus      the positions (default regress/corpus-v1.txt)
+ *
+ *  Each differing position is printed with both moves.  The exit status is
+ *  1 if the number of mismatches is not the expected one.  The new engine
+ *  searches without the proof-number solver or the opening book, so both
+ *  engines do the same plain alpha-beta search.
+ *
+ *  On corpus-v1 at depth 3, two positions differ, both because the engines
+ *  search moves in a different order.  In game-73 both moves win.  In
+ *  game-69 both engines find a win in three, but the search, new and old
+ *  alike, prefers a tied score from a deeper node, and a later move whose
+ *  fail-hard bound ties the win replaces it.  This engine searches such a
+ *  move after its first win; the old one does not.
+ */
+public class Regress {
+	final static String CORPUS = "regress/corpus-v1.txt";
+	final static int EXPECTED = 2; //mismatches on CORPUS at depth 3
+
+	private Constructor<?> oldPlayer; //MachinePlayer(int color, int searchDepth)
+	private Constructor<?> oldAdd; //Move(int x, int y)
+	private Constructor<?> oldStep; //Move(int x1, int y1, int x2, int y2)
+	private Method oldForce, oldOpponent, oldChoose;
+
+	/*
+	 * Load the original engine's classes from 'bin'
+	 */
+	Regress(File bin) throws ReflectiveOperationException, IOException {
+		if (!new File(bin, "player/MachinePlayer.class").isFile()) {
+			throw new IOException("no original engine in " + bin);
+		}
+		//the platform loader as parent, so player.* cannot come from our classpath
+		ClassLoader loader = new URLClassLoader(new URL[] { bin.toURI().toURL() },
+				ClassLoader.getPlatformClassLoader());
+		Class<?> player = loader.loadClass("player.MachinePlayer");
+		Class<?> move = loader.loadClass("player.Move");
+		oldPlayer = player.getConstructor(int.class, int.class);
+		oldAdd = move.getConstructor(int.class, int.class);
+		oldStep = move.getConstructor(int.class, int.class, int.class, int.class);
+		oldForce = player.getMethod("forceMove", move);
+		oldOpponent = player.getMethod("opponentMove", move);
+		oldChoose = player.getMethod("chooseMove");
+	}
+
+	/*
+	 * Return the move the original engine chooses after 'moves', as
+	 * Move.toString() prints it
+	 */
+	String oldMove(List<Move> moves, int depth) throws ReflectiveOperationException {
+		int side = Perft.sideToMove(moves);
+		Object player = oldPlayer.newInstance(side, depth);
+		int color = MachinePlayer.WHITE;
+		for (Move m : moves) {
+			Object old = m.moveKind == Move.ADD ? oldAdd.newInstance(m.x1, m.y1)
+					: oldStep.newInstance(m.x1, m.y1, m.x2, m.y2);
+			Object legal = (color == side ? oldForce : oldOpponent).invoke(player, old);
+			if (!(Boolean) legal) {
+				throw new IllegalArgumentException("the original engine refused " + m);
+			}
+			color = 1 - color;
+		}
+		return oldChoose.invoke(player).toString();
+	}
+
+	/*
+	 * Return the move this engine chooses after 'moves', as Move.toString()
+	 * prints it
+	 */
+	static String newMove(List<Move> moves, int depth) {
+		int side = Perft.sideToMove(moves);
+		MachinePlayer player = new MachinePlayer(side, depth);
+		player.setOpeningBook(null);
+		player.setSolver(0, 0);
+		int color = MachinePlayer.WHITE;
+		for (Move m : moves) {
+			boolean legal = color == side ? player.forceMove(m) : player.opponentMove(m);
+			if (!legal) {
+				throw new IllegalArgumentException("illegal move " + m);
+			}
+			color = 1 - color;
+		}
+		return String.valueOf(player.chooseMove());
+	}
+
+	public static void main(String[] args) throws IOException, ReflectiveOperationException {
+		int depth = 3;
+		int expected = EXPECTED;
+		String bin = "bin";
+		String corpus = CORPUS;
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			if (a.equals("-depth") && i + 1 < args.length) {
+				depth = Integer.parseInt(args[++i]);
+			} else if (a.equals("-expect") && i + 1 < args.length) {
+				expected = Integer.parseInt(args[++i]);
+			} else if (a.equals("-bin") && i + 1 < args.length) {
+				bin = args[++i];
+			} else if (a.startsWith("-")) {
+				System.err.println("usage: java player.Regress [-depth N] [-bin DIR] [-expect N] [corpus]");
+				System.exit(2);
+			} else {
+				corpus = a;
+			}
+		}
+		Regress regress = new Regress(new File(bin));
+		List<String> names = new ArrayList<String>();
+		List<List<Move>> positions = new ArrayList<List<Move>>();
+		try (BufferedReader r = Files.newBufferedReader(Paths.get(corpus), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				int colon = line.indexOf(':');
+				if (line.startsWith("#") || colon < 0) {
+					continue;
+				}
+				names.add(line.substring(0, colon));
+				positions.add(Notation.parseMoves(line.substring(colon + 1)));
+			}
+		}
+		int mismatches = 0;
+		long start = System.nanoTime();
+		for (int k = 0; k < positions.size(); k++) {
+			String before = regress.oldMove(positions.get(k), depth);
+			String after = newMove(positions.get(k), depth);
+			if (!before.equals(after)) {
+				System.out.println(names.get(k) + ": original " + before + ", now " + after);
+				mismatches++;
+			}
+		}
+		System.out.printf("%d positions at depth %d, mismatches=%d (expected %d), %.1f s%n", positions.size(),
+				depth, mismatches, expected, (System.nanoTime() - start) / 1e9);
+		System.exit(mismatches == expected ? 0 : 1);
+	}
+
+}
@@ -0,0 +1,77 @@
+/* SearchEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ *  A Flight Recorder event for one chooseMove search, carrying the same
+ *  numbers as SearchStats.  It is committed once per move, never from
+ *  inside the search, so recording costs nothing per node.
+ *  The detailed fields are 0 unless -Dnetwork.stats=true.
+ */
+@Name("network.Search")
+@Label("Search")
+@Category("Network")
+@Description("One chooseMove search of a MachinePlayer")
+class SearchEvent extends Event {
+	@Label("Color")
+	int color;
+	@Label("Move")
+	String move;
+	@Label("Depth")
+	int depth;
+	@Label("Nodes")
+	long nodes;
+	@Label("Evaluations")
+	long evaluations;
+	@Label("Leaves")
+	long leaves;
+	@Label("Cutoffs")
+	long cutoffs;
+	@Label("First Move Cutoffs")
+	long firstMoveCutoffs;
+	@Label("Table Probes")
+	long tableProbes;
+	@Label("Table Hits")
+	long tableHits;
+	@Label("Maximum Ply")
+	int maxPly;
+	@Label("Evaluate Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long evalNanos;
+	@Label("Move Generation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long moveNanos;
+	@Label("Nodes per Second")
+	double nodesPerSecond;
+
+	//Fill in the fields from 'stats' and commit, if the event is being recorded
+	void report(int color, Move m, SearchStats stats) {
+		end();
+		if (!shouldCommit()) {
+			return;
+		}
+		this.color = color;
+		move = String.valueOf(m);
+		depth = stats.depth;
+		nodes = stats.nodes;
+		evaluations = stats.evaluations;
+		leaves = stats.leaves;
+		cutoffs = stats.totalCutoffs();
+		firstMoveCutoffs = stats.cutoffs[0];
+		tableProbes = stats.tableProbes;
+		tableHits = stats.tableHits;
+		maxPly = stats.maxPly;
+		evalNanos = stats.evalNanos;
+		moveNanos = stats.moveNanos;
+		nodesPerSecond = stats.nodesPerSecond();
+		commit();
+	}
+
+}
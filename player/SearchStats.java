@@ -0,0 +1,146 @@
+/* SearchStats.java */
+
+package player;
+
+/**
+ *  What the last chooseMove search did.  Like Move, this is a container for
+ *  data, so all fields are public.
+ *
+ *  Nodes, table and evaluation cache hits, depth and time are always
+ *  filled in; they cost the search nothing extra.  The rest (evaluations,
+ *  leaves, cutoffs, re-searches, pruned and reduced nodes, maximum ply and
+ *  the time split) is only counted when the JVM runs with
+ *  -Dnetwork.stats=true.
+ *  ENABLED is a constant, so with the flag off the compiler drops the
+ *  counting code from bestMove altogether.
+ */
+public class SearchStats {
+	public final static boolean ENABLED = Boolean.getBoolean("network.stats");
+	public final static int CUTOFF_SLOTS = 8; //cutoffs by move index; the last slot counts all later moves
+
+	public long nodes; //bestMove calls
+	public long evaluations; //evaluate calls, at the leaves and at every inner node
+	public long leaves; //evaluate calls at depth 0
+	public long[] cutoffs = new long[CUTOFF_SLOTS]; //beta cutoffs by the index of the move that caused them
+	public long researches; //principal variation and aspiration searches that had to be repeated
+	public long pruned; //nodes cut off by a null move or by futility
+	public long reduced; //late moves searched at reduced depth
+	public long tableProbes; //transposition table probes, 0 without a table
+	public long tableHits;
+	public long evalProbes; //evaluation cache probes, 0 without a cache
+	public long evalHits;
+	public int depth; //depth of the deepest search that finished
+	public int maxPly; //deepest ply any node was searched at
+	public long evalNanos; //time spent in evaluate
+	public long moveNanos; //time spent generating and ordering moves
+	public long nanos; //time spent in chooseMove
+	public boolean fromBook; //the move came from the opening book, without a search
+	public long solverNodes; //positions the proof-number solver looked at
+	public boolean proven; //the solver proved a win, so there was no search
+	//the move came from the search made on the opponent's time; nodes and
+	//depth count that search, nanos only the wait for it to end
+	public boolean pondered;
+
+	//Forget the counts of the previous search
+	void clear() {
+		nodes = 0;
+		evaluations = 0;
+		leaves = 0;
+		java.util.Arrays.fill(cutoffs, 0);
+		researches = 0;
+		pruned = 0;
+		reduced = 0;
+		tableProbes = 0;
+		tableHits = 0;
+		evalProbes = 0;
+		evalHits = 0;
+		depth = 0;
+		maxPly = 0;
+		evalNanos = 0;
+		moveNanos = 0;
+		nanos = 0;
+		fromBook = false;
+		solverNodes = 0;
+		proven = false;
+		pondered = false;
+	}
+
+	//Count a beta cutoff caused by the move at index k of its list
+	void cutoff(int k) {
+		cutoffs[Math.min(k, CUTOFF_SLOTS - 1)]++;
+	}
+
+	//Add the detailed counts of a helper's share of a parallel search
+	void add(SearchStats other) {
+		evaluations += other.evaluations;
+		leaves += other.leaves;
+		for (int i = 0; i < CUTOFF_SLOTS; i++) {
+			cutoffs[i] += other.cutoffs[i];
+		}
+		researches += other.researches;
+		pruned += other.pruned;
+		reduced += other.reduced;
+		maxPly = Math.max(maxPly, other.maxPly);
+		evalNanos += other.evalNanos;
+		moveNanos += other.moveNanos;
+	}
+
+	public long totalCutoffs() {
+		long total = 0;
+		for (long c : cutoffs) {
+			total += c;
+		}
+		return total;
+	}
+
+	public double nodesPerSecond() {
+		return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		if (fromBook) {
+			return "book move";
+		}
+		if (proven) {
+			return "proven win after " + solverNodes + " solver nodes";
+		}
+		b.append("depth ").append(depth).append(", ").append(nodes).append(" nodes in ")
+				.append(millis(nanos)).append(" ms (").append((long) nodesPerSecond()).append(" nodes/s)");
+		if (pondered) {
+			b.append(", pondered");
+		}
+		if (solverNodes > 0) {
+			b.append(", solver ").append(solverNodes).append(" nodes");
+		}
+		if (researches > 0) {
+			b.append(", ").append(researches).append(" re-searches");
+		}
+		if (pruned > 0) {
+			b.append(", ").append(pruned).append(" pruned");
+		}
+		if (reduced > 0) {
+			b.append(", ").append(reduced).append(" reduced");
+		}
+		if (tableProbes > 0) {
+			b.append(", table hits ").append(tableHits).append('/').append(tableProbes);
+		}
+		if (evalProbes > 0) {
+			b.append(", eval cache hits ").append(evalHits).append('/').append(evalProbes);
+		}
+		if (ENABLED) {
+			b.append(", ").append(evaluations).append(" evaluations (").append(leaves).append(" leaves)");
+			b.append(", max ply ").append(maxPly);
+			b.append(", cutoffs by move index ").append(java.util.Arrays.toString(cutoffs));
+			b.append(", evaluate ").append(millis(evalNanos)).append(" ms, moves ")
+					.append(millis(moveNanos)).append(" ms");
+		}
+		return b.toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.1f", nanos / 1e6);
+	}
+
+}
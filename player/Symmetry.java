@@ -0,0 +1,113 @@
+/* Symmetry.java */
+
+package player;
+
+/**
+ *  The symmetries of a Network position.  Mirroring the board left to
+ *  right (x becomes 7 - x) swaps white's two goals, mirroring it top to
+ *  bottom (y becomes 7 - y) swaps black's, and doing both turns it by 180
+ *  degrees; none of them moves a goal to the other color, and lines,
+ *  connections, networks and the cluster rule all look the same in the
+ *  mirror.  So a position and its three images are the same game up to
+ *  where the chips are drawn: the legal moves of one are the images of the
+ *  legal moves of the other, and the same side wins.  evaluate() is the
+ *  same on all four only if it counts paths both ways (see
+ *  MachinePlayer.setSymmetry): one way, it counts from a goal that a mirror
+ *  moves to the other end.
+ *
+ *  Transposing the board (x and y trade places) together with swapping the
+ *  colors is a symmetry of the rules too, but not of a game: white always
+ *  moves first, so the swapped image of an add-phase position can never
+ *  occur, and scores are kept from one fixed side.  It is left out.
+ *
+ *  Square x * 8 + y of a symmetry's image is the square number xor
+ *  MIRROR_X * 56 and MIRROR_Y * 7, so every symmetry is its own inverse:
+ *  applying it again maps an image back.  The canonical form of a position
+ *  is the image with the smallest Zobrist key (see Board.canonical); tables
+ *  and books store that image, and the moves in them are of that image.
+ */
+public final class Symmetry {
+	public final static int IDENTITY = 0;
+	public final static int MIRROR_X = 1;
+	public final static int MIRROR_Y = 2;
+	public final static int ROTATE = MIRROR_X | MIRROR_Y;
+	final static int COUNT = 4;
+
+	//the xor that maps a square under each symmetry
+	private final static int[] FLIP = { 0, 56, 7, 63 };
+
+	private Symmetry() {
+	}
+
+	static int square(int sq, int s) {
+		return sq ^ FLIP[s];
+	}
+
+	/*
+	 * Return the image of a mask of squares
+	 */
+	static long mask(long m, int s) {
+		if ((s & MIRROR_X) != 0) {
+			m = Long.reverseBytes(m);
+		}
+		if ((s & MIRROR_Y) != 0) {
+			//bit order reversed within each byte
+			m = Long.reverse(Long.reverseBytes(m));
+		}
+		return m;
+	}
+
+	/*
+	 * Return the image of a move packed by Board.pack; 0 stays 0
+	 */
+	static int move(int code, int s) {
+		if (code == 0 || s == IDENTITY) {
+			return code;
+		}
+		int to = square(code & 63, s);
+		if ((code >>> 12) == Move.STEP) {
+			return Move.STEP << 12 | square((code >>> 6) & 63, s) << 6 | to;
+		}
+		return code & ~63 | to;
+	}
+
+	/*
+	 * Return the image of m under symmetry 's'.  A quit stays a quit.
+	 */
+	public static Move apply(Move m, int s) {
+		if (m.moveKind == Move.ADD || m.moveKind == Move.STEP) {
+			return Board.unpack(move(Board.pack(m), s));
+		}
+		return m;
+	}
+
+	/*
+	 * Return the image of p under symmetry 's'
+	 */
+	public static Position apply(Position p, int s) {
+		return new Position(mask(p.black, s), mask(p.white, s), p.side, p.round);
+	}
+
+	/*
+	 * Return the symmetry that takes p to its canonical form
+	 */
+	public static int canonical(Position p) {
+		int best = IDENTITY;
+		long bestKey = 0;
+		for (int s = 0; s < COUNT; s++) {
+			long key = p.side == MachinePlayer.WHITE ? Board.WHITE_TO_MOVE : 0;
+			for (long b = mask(p.black, s); b != 0; b &= b - 1) {
+				key ^= Board.ZOBRIST[MachinePlayer.BLACK][Long.numberOfTrailingZeros(b)];
+			}
+			for (long w = mask(p.white, s); w != 0; w &= w - 1) {
+				key ^= Board.ZOBRIST[MachinePlayer.WHITE][Long.numberOfTrailingZeros(w)];
+			}
+			if (s == IDENTITY || key < bestKey) {
+				best = s;
+				bestKey = key;
+			}
+		}
+		return best;
+	}
+
+}
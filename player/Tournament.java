@@ -0,0 +1,346 @@
+/* Tournament.java */
+
+package player;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ *  Plays two Players against each other without the GUI, many games at once.
+ *
+ *  Usage: java player.Tournament [options] playerA playerB
+ *    -games N    games to play (default 1000); rounded up to an even number
+ *    -threads N  games played at once (default: all cores)
+ *    -random N   random adds that open each game (default 4)
+ *    -max N      moves after which a game is a draw (default 200)
+ *    -seed N     seed for the random openings (default 1)
+ *    -record F   append every game to the game record file F
+ *  A player is a class name with its constructor arguments after colons:
+ *    player.MachinePlayer:3        (color, searchDepth)
+ *    player.MachinePlayer:5:100    (color, searchDepth, timeLimit)
+ *  "machine" is short for player.MachinePlayer, and "mcts" for a
+ *  MachinePlayer with the Monte Carlo engine:
+ *    mcts:0:100                    (color, playouts, timeLimit)
+ *  A MachinePlayer may be given search options, each after a slash:
+ *    machine:20:100/pvs/null   principal variation search and null moves
+ *  The options are pvs, null, lmr, futility, ponder, keep, symmetry,
+ *  threads=N, eval=KB, an evaluation cache of KB kilobytes, and solver or
+ *  solver=N, the proof-number solver looking for a win in 3 or N moves.
+ *
+ *  Each random opening is played twice, once with each player as white.
+ *  A referee keeps its own board: every move goes through its forceMove or
+ *  opponentMove, so an illegal move (or a quit) loses the game, and the
+ *  referee's network check decides wins.  If a move completes networks for
+ *  both sides, the player who moved loses, as in the rules of Network.
+ */
+public class Tournament {
+	final static int WIN = 1;
+	final static int DRAW = 0;
+	final static int LOSS = -1;
+
+	private String[] specs = new String[2]; //playerA and playerB
+	private int randomMoves = 4;
+	private int maxMoves = 200;
+	private long seed = 1;
+	private GameRecord.Writer recorder; //null unless games are recorded
+
+	/*
+	 * The outcome of one game, from playerA's point of view
+	 */
+	static class Game {
+		int result; //WIN, DRAW or LOSS
+		int moves; //moves chosen by the players, not counting the opening
+		String note; //why the game ended, if not by a network or the move limit
+		GameRecord record = new GameRecord(); //every move played, the opening too
+	}
+
+	/*
+	 * Create a player from 'spec' (see the class comment) playing 'color'.
+	 * Throws UncheckedIOException if -Dnetwork.book names a book that cannot
+	 * be loaded, rather than play without it.
+	 */
+	static Player create(String spec, int color) {
+		if (OpeningBook.propertyError() != null) {
+			throw new UncheckedIOException("opening book not loaded", OpeningBook.propertyError());
+		}
+		String[] options = spec.split("/");
+		String[] parts = options[0].split(":");
+		String name = parts[0];
+		if (name.equals("mcts")) {
+			//the engine goes in after the color
+			String[] all = new String[parts.length + 1];
+			all[1] = Integer.toString(MachinePlayer.MONTE_CARLO);
+			System.arraycopy(parts, 1, all, 2, parts.length - 1);
+			parts = all;
+		}
+		if (name.equals("machine") || name.equals("mcts")) {
+			name = "player.MachinePlayer";
+		}
+		Player player;
+		try {
+			//the constructor taking the color and one more argument per part
+			Constructor<?> c = null;
+			for (Constructor<?> k : Class.forName(name).getConstructors()) {
+				if (k.getParameterCount() == parts.length) {
+					c = k;
+				}
+			}
+			if (c == null) {
+				throw new IllegalArgumentException("no constructor of " + name + " takes " + parts.length + " arguments");
+			}
+			Class<?>[] types = c.getParameterTypes();
+			Object[] args = new Object[parts.length];
+			args[0] = color;
+			for (int i = 1; i < parts.length; i++) {
+				args[i] = types[i] == long.class ? (Object) Long.parseLong(parts[i]) : (Object) Integer.parseInt(parts[i]);
+			}
+			player = (Player) c.newInstance(args);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("cannot create player " + spec, e);
+		}
+		for (int i = 1; i < options.length; i++) {
+			if (!(player instanceof MachinePlayer)) {
+				throw new IllegalArgumentException(name + " takes no options");
+			}
+			setOption((MachinePlayer) player, options[i]);
+		}
+		return player;
+	}
+
+	//Turn on the search option named 'option' (see the class comment)
+	private static void setOption(MachinePlayer player, String option) {
+		if (option.equals("pvs")) {
+			player.setPrincipalVariation(true);
+		} else if (option.equals("null")) {
+			player.setNullMove(true);
+		} else if (option.equals("lmr")) {
+			player.setLateMoveReductions(true);
+		} else if (option.equals("futility")) {
+			player.setFutility(true);
+		} else if (option.equals("ponder")) {
+			player.setPondering(true);
+		} else if (option.equals("keep")) {
+			player.setKeepState(true);
+		} else if (option.equals("symmetry")) {
+			player.setSymmetry(true);
+		} else if (option.equals("solver")) {
+			player.setSolver(MachinePlayer.SOLVER_MOVES, MachinePlayer.SOLVER_BUDGET);
+		} else if (option.startsWith("solver=")) {
+			player.setSolver(Integer.parseInt(option.substring(7)), MachinePlayer.SOLVER_BUDGET);
+		} else if (option.startsWith("eval=")) {
+			player.setEvalCacheSize(Long.parseLong(option.substring(5)) * 1024);
+		} else if (option.startsWith("threads=")) {
+			player.setThreads(Integer.parseInt(option.substring(8)));
+		} else {
+			throw new IllegalArgumentException("unknown option " + option);
+		}
+	}
+
+	/*
+	 * Play game number 'index': games 2k and 2k+1 share an opening, and
+	 * playerA is white in the even one
+	 */
+	Game play(int index) {
+		int colorA = index % 2 == 0 ? MachinePlayer.WHITE : MachinePlayer.BLACK;
+		Player[] players = new Player[2];
+		players[colorA] = create(specs[0], colorA);
+		players[1 - colorA] = create(specs[1], 1 - colorA);
+		try {
+			return play(index, players, colorA);
+		} finally {
+			//no ponder search or search pool may run on into the next games
+			for (Player p : players) {
+				if (p instanceof MachinePlayer) {
+					((MachinePlayer) p).close();
+				}
+			}
+		}
+	}
+
+	private Game play(int index, Player[] players, int colorA) {
+		Game game = new Game();
+		MachinePlayer referee = new MachinePlayer(MachinePlayer.WHITE, 1);
+		referee.setTableSize(0); //it never searches
+		Random random = new Random(seed * 1000003 + index / 2);
+
+		int color = MachinePlayer.WHITE;
+		for (int i = 0; i < randomMoves; i++) {
+			Move m = randomAdd(referee, color, random);
+			play(referee, m, color);
+			game.record.add(m);
+			if (!players[color].forceMove(m) || !players[1 - color].opponentMove(m)) {
+				throw new IllegalStateException("a player refused the opening move " + m);
+			}
+			color = 1 - color;
+		}
+		int winner = -1;
+		while (game.moves < maxMoves) {
+			Move m = players[color].chooseMove();
+			game.moves++;
+			boolean quit = m == null || m.moveKind == Move.QUIT;
+			if (quit || !play(referee, m, color)) {
+				game.note = (color == colorA ? "A" : "B") + (quit ? " quit" : " played illegal " + m);
+				winner = 1 - color;
+				break;
+			}
+			game.record.add(m);
+			if (!players[1 - color].opponentMove(m)) {
+				game.note = (color == colorA ? "B" : "A") + " refused " + m;
+				winner = color;
+				break;
+			}
+			boolean mine = referee.calcWin(color) == NetworkFinder.WIN;
+			boolean theirs = referee.calcWin(1 - color) == NetworkFinder.WIN;
+			if (theirs) {
+				winner = 1 - color;
+				break;
+			}
+			if (mine) {
+				winner = color;
+				break;
+			}
+			color = 1 - color;
+		}
+		game.result = winner < 0 ? DRAW : winner == colorA ? WIN : LOSS;
+		//a note means a quit, an illegal move or a refusal decided the game
+		game.record.setWinner(winner < 0 ? GameRecord.NONE : winner, game.note != null);
+		if (recorder != null) {
+			try {
+				recorder.write(game.record);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return game;
+	}
+
+	//Play m for 'color' on the referee's board; return false if it is illegal
+	private static boolean play(MachinePlayer referee, Move m, int color) {
+		return color == MachinePlayer.WHITE ? referee.forceMove(m) : referee.opponentMove(m);
+	}
+
+	private static Move randomAdd(MachinePlayer referee, int color, Random random) {
+		List<Move> legal = new ArrayList<Move>();
+		for (int x = 0; x < MachinePlayer.SIZE; x++) {
+			for (int y = 0; y < MachinePlayer.SIZE; y++) {
+				Move m = new Move(x, y);
+				if (referee.validMove(m, color)) {
+					legal.add(m);
+				}
+			}
+		}
+		return legal.get(random.nextInt(legal.size()));
+	}
+
+	/*
+	 * Return the Elo difference that scores 'score' (between 0 and 1)
+	 */
+	static double elo(double score) {
+		if (score == 0.5) {
+			return 0;
+		}
+		score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException, IOException {
+		Tournament t = new Tournament();
+		int games = 1000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int named = 0;
+		String record = null;
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			if (a.equals("-record") && i + 1 < args.length) {
+				record = args[++i];
+			} else if (a.startsWith("-") && i + 1 < args.length) {
+				long value = Long.parseLong(args[++i]);
+				if (a.equals("-games")) {
+					games = (int) value;
+				} else if (a.equals("-threads")) {
+					threads = (int) value;
+				} else if (a.equals("-random")) {
+					t.randomMoves = (int) value;
+				} else if (a.equals("-max")) {
+					t.maxMoves = (int) value;
+				} else if (a.equals("-seed")) {
+					t.seed = value;
+				} else {
+					throw new IllegalArgumentException("unknown option " + a);
+				}
+			} else if (named < 2) {
+				t.specs[named++] = a;
+			} else {
+				throw new IllegalArgumentException("too many players: " + a);
+			}
+		}
+		if (named < 2) {
+			System.err.println("usage: java player.Tournament [-games N] [-threads N] [-random N] [-max N] [-seed N] [-record F] playerA playerB");
+			System.exit(2);
+		}
+		games += games % 2;
+		//fail now rather than in every game if a player cannot be created
+		create(t.specs[0], MachinePlayer.WHITE);
+		create(t.specs[1], MachinePlayer.WHITE);
+		if (record != null) {
+			t.recorder = GameRecord.Writer.open(record);
+		}
+
+		final Tournament tournament = t;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		List<Callable<Game>> tasks = new ArrayList<Callable<Game>>();
+		for (int i = 0; i < games; i++) {
+			final int index = i;
+			tasks.add(new Callable<Game>() {
+				public Game call() {
+					return tournament.play(index);
+				}
+			});
+		}
+		long start = System.nanoTime();
+		List<Future<Game>> results = pool.invokeAll(tasks);
+		long nanos = System.nanoTime() - start;
+		pool.shutdown();
+		if (t.recorder != null) {
+			t.recorder.close();
+		}
+
+		int wins = 0, draws = 0, losses = 0;
+		long moves = 0;
+		for (Future<Game> f : results) {
+			Game g = f.get();
+			moves += g.moves;
+			if (g.result == WIN) {
+				wins++;
+			} else if (g.result == DRAW) {
+				draws++;
+			} else {
+				losses++;
+			}
+			if (g.note != null) {
+				System.out.println("note: " + g.note);
+			}
+		}
+		//score per game is 1, 1/2 or 0; the 95% interval of the mean score
+		//is mapped through the Elo curve
+		double score = (wins + draws / 2.0) / games;
+		double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+				+ losses * Math.pow(score, 2)) / games;
+		double margin = 1.96 * Math.sqrt(variance / games);
+		double elo = elo(score);
+		System.out.printf("%s vs %s: %d games, +%d =%d -%d, score %.1f%%%n", t.specs[0], t.specs[1], games,
+				wins, draws, losses, 100 * score);
+		System.out.printf("Elo %+.1f (95%%: %+.1f .. %+.1f)%n", elo, elo(score - margin), elo(score + margin));
+		System.out.printf("%d moves in %.1f s, %.0f moves/s on %d threads%n", moves, nanos / 1e9,
+				moves * 1e9 / nanos, threads);
+	}
+
+}
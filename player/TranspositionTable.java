@@ -0,0 +1,138 @@
+/* TranspositionTable.java */
+
+package player;
+
+/**
+ *  A fixed-size hash table of search results, indexed by the Zobrist key of a
+ *  position (with the side to move).  The table is split into buckets of two
+ *  slots: the first keeps the deepest result seen for its bucket, the second
+ *  always takes the newest one, so deep results survive while recent
+ *  positions still get cached.
+ *
+ *  A table kept from one search to the next is aged with newSearch(): older
+ *  results still answer probes, but the deepest-result slot gives way to
+ *  any result of the current search, so it does not fill up with deep
+ *  results of positions the game has left behind.
+ *
+ *  An entry is packed into one long:
+ *    bits  0-15  score + 32768
+ *    bits 16-23  depth at which the score was decided (BestStep.depth)
+ *    bits 24-31  remaining search depth of the node
+ *    bits 32-33  bound type (EXACT, LOWER or UPPER)
+ *    bits 34-49  best move, packed by Board.pack (0 if none)
+ *    bits 50-55  age: the search that stored it, modulo 64
+ *
+ *  Parallel searches share one table without locking.  Each slot stores
+ *  key ^ entry next to the entry, so a slot torn by two threads writing at
+ *  once no longer matches its key and reads as a miss.
+ */
+public class TranspositionTable {
+	final static int EXACT = 1;
+	final static int LOWER = 2; //the score is at least this big
+	final static int UPPER = 3; //the score is at most this big
+
+	private long[] keys;
+	private long[] data;
+	private int mask;
+	private long age; //of the current search, already shifted into place
+
+	//probes and hits since the last clear(); only approximate when the
+	//table is shared between threads
+	long probes;
+	long hits;
+
+	/*
+	 * Creates a table holding 'entries' results, rounded down to a power of
+	 * two (and at least one bucket).
+	 */
+	public TranspositionTable(int entries) {
+		int size = 2;
+		while (size * 2 <= entries) {
+			size *= 2;
+		}
+		keys = new long[size];
+		data = new long[size];
+		mask = size - 2;
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	//Forget every stored result and reset the counters
+	public void clear() {
+		java.util.Arrays.fill(keys, 0);
+		java.util.Arrays.fill(data, 0);
+		probes = 0;
+		hits = 0;
+	}
+
+	/*
+	 * Start a new search that keeps the stored results: they become one
+	 * search older.  The counters are reset.
+	 */
+	public void newSearch() {
+		age = (age + (1L << 50)) & (63L << 50);
+		probes = 0;
+		hits = 0;
+	}
+
+	/*
+	 * Return the packed entry stored for 'key', or 0 if there is none
+	 */
+	long probe(long key) {
+		probes++;
+		int i = (int) key & mask;
+		long entry = data[i];
+		if (entry != 0 && (keys[i] ^ entry) == key) {
+			hits++;
+			return entry;
+		}
+		entry = data[i + 1];
+		if (entry != 0 && (keys[i + 1] ^ entry) == key) {
+			hits++;
+			return entry;
+		}
+		return 0;
+	}
+
+	/*
+	 * Store a search result for 'key'.  It goes into the depth-preferred slot
+	 * when that slot is empty, holds the same position, was searched no deeper
+	 * or by an earlier search, otherwise into the always-replace slot.
+	 */
+	void store(long key, int score, int scoreDepth, int depth, int bound, int move) {
+		long entry = (score + 32768L) | (long) scoreDepth << 16 | (long) depth << 24
+				| (long) bound << 32 | (long) move << 34 | age;
+		int i = (int) key & mask;
+		long old = data[i];
+		if (old == 0 || (keys[i] ^ old) == key || depth(old) <= depth || (old & (63L << 50)) != age) {
+			keys[i] = key ^ entry;
+			data[i] = entry;
+		} else {
+			keys[i + 1] = key ^ entry;
+			data[i + 1] = entry;
+		}
+	}
+
+	static int score(long entry) {
+		return (int) (entry & 0xFFFF) - 32768;
+	}
+
+	static int scoreDepth(long entry) {
+		return (int) (entry >>> 16) & 0xFF;
+	}
+
+	static int depth(long entry) {
+		return (int) (entry >>> 24) & 0xFF;
+	}
+
+	static int bound(long entry) {
+		return (int) (entry >>> 32) & 3;
+	}
+
+	static int move(long entry) {
+		return (int) (entry >>> 34) & 0xFFFF;
+	}
+
+}
@@ -0,0 +1,89 @@
+/* VectorPairCounter.java */
+
+package player;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *  Board.pairs for a whole batch, one position per vector lane.  The shifts
+ *  of Board.pairs are the same for every position, so they run on all the
+ *  lanes at once; a ray needs at most seven steps to cross the board.
+ *
+ *  Built only by the "vector" profile, since it needs the incubating module
+ *  jdk.incubator.vector; BatchEvaluator loads it by name when the module is
+ *  there.
+ */
+class VectorPairCounter implements BatchEvaluator.PairCounter {
+	private final static VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+	private final static long M1 = 0x5555555555555555L;
+	private final static long M2 = 0x3333333333333333L;
+	private final static long M4 = 0x0F0F0F0F0F0F0F0FL;
+
+	public void count(long[] positions, int from, int to, int[] pairs) {
+		int lanes = SPECIES.length();
+		long[] black = new long[lanes];
+		long[] white = new long[lanes];
+		long[] bytes = new long[lanes];
+		for (int i = from; i < to; i += lanes) {
+			int n = Math.min(lanes, to - i);
+			for (int k = 0; k < lanes; k++) {
+				black[k] = k < n ? positions[2 * (i + k)] : 0;
+				white[k] = k < n ? positions[2 * (i + k) + 1] : 0;
+			}
+			LongVector b = LongVector.fromArray(SPECIES, black, 0);
+			LongVector w = LongVector.fromArray(SPECIES, white, 0);
+			LongVector all = b.or(w);
+			countInto(b, all, bytes);
+			for (int k = 0; k < n; k++) {
+				pairs[2 * (i - from + k)] = sumBytes(bytes[k]);
+			}
+			countInto(w, all, bytes);
+			for (int k = 0; k < n; k++) {
+				pairs[2 * (i - from + k) + 1] = sumBytes(bytes[k]);
+			}
+		}
+	}
+
+	/*
+	 * Leave in 'bytes', per lane, the pairs of 'own' as eight byte counts
+	 * that add up to the total
+	 */
+	private static void countInto(LongVector own, LongVector all, long[] bytes) {
+		LongVector empty = all.not();
+		LongVector total = LongVector.zero(SPECIES);
+		for (int d = 0; d < Board.STEP.length; d++) {
+			int step = Board.STEP[d];
+			long keep = Board.STEP_KEEP[d];
+			LongVector ray = own.lanewise(VectorOperators.LSHL, step).and(keep);
+			LongVector seen = ray.and(all);
+			for (int i = 1; i < Board.SIZE - 1; i++) {
+				ray = ray.and(empty).lanewise(VectorOperators.LSHL, step).and(keep);
+				seen = seen.or(ray.and(all));
+			}
+			total = total.add(byteCounts(seen.and(own).and(Board.PAIR_END[d])));
+		}
+		total.intoArray(bytes, 0);
+	}
+
+	/*
+	 * The population count of every byte of every lane; four of these can
+	 * be added without a byte overflowing
+	 */
+	private static LongVector byteCounts(LongVector x) {
+		x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(M1));
+		x = x.and(M2).add(x.lanewise(VectorOperators.LSHR, 2).and(M2));
+		return x.add(x.lanewise(VectorOperators.LSHR, 4)).and(M4);
+	}
+
+	private static int sumBytes(long x) {
+		return (int) ((x * 0x0101010101010101L) >>> 56);
+	}
+
+	@Override
+	public String toString() {
+		return SPECIES.length() + " lanes";
+	}
+
+}